@@ -0,0 +1,45 @@
+package com.asu.hiblatek;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link AnalysisMetrics}, whose trace sections
+ * need the Android runtime.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AnalysisMetricsTest {
+
+    @Test
+    public void recordsTimersAndCounters() throws InterruptedException {
+        AnalysisMetrics metrics = new AnalysisMetrics(true);
+        for (int i = 0; i < 2; i++) {
+            long t = metrics.begin(AnalysisMetrics.Timer.COUNT);
+            Thread.sleep(5);
+            metrics.end(AnalysisMetrics.Timer.COUNT, t);
+        }
+        metrics.add(AnalysisMetrics.Counter.PIXELS_SCANNED, 1000);
+        metrics.add(AnalysisMetrics.Counter.TRANSITIONS, 12);
+
+        AnalysisMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.calls(AnalysisMetrics.Timer.COUNT));
+        assertTrue(snapshot.millis(AnalysisMetrics.Timer.COUNT) >= 10);
+        assertEquals(0, snapshot.calls(AnalysisMetrics.Timer.DECODE));
+        assertEquals(1000, snapshot.count(AnalysisMetrics.Counter.PIXELS_SCANNED));
+        assertEquals(12, snapshot.count(AnalysisMetrics.Counter.TRANSITIONS));
+    }
+
+    @Test
+    public void disabledMetricsRecordNothing() {
+        AnalysisMetrics metrics = AnalysisMetrics.DISABLED;
+        metrics.end(AnalysisMetrics.Timer.COUNT, metrics.begin(AnalysisMetrics.Timer.COUNT));
+        metrics.add(AnalysisMetrics.Counter.TRANSITIONS, 5);
+        AnalysisMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(0, snapshot.calls(AnalysisMetrics.Timer.COUNT));
+        assertEquals(0, snapshot.count(AnalysisMetrics.Counter.TRANSITIONS));
+    }
+}
@@ -0,0 +1,96 @@
+package com.asu.hiblatek;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the fused {@link LineOpening} with the {@code Imgproc.threshold},
+ * {@code erode} and {@code dilate} sequence for vertical line kernels of
+ * 10 to 80 pixels on a 12MP RGBA frame. Results are written to logcat
+ * under the {@code hiblatek.bench} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LineOpeningBenchmark {
+    private static final String TAG = "hiblatek.bench";
+    private static final int ROWS = 3000;
+    private static final int COLS = 4000;
+    private static final int STRIP_WIDTH = 64;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    @Test
+    public void fusedOpeningMatchesAndBeatsOpenCV() {
+        Mat image = new Mat(ROWS, COLS, CvType.CV_8UC4);
+        Core.randn(image, 128, 60);
+        // blur vertically so that runs of several lengths survive the threshold
+        Imgproc.blur(image, image, new Size(1, 31));
+
+        for (int kernel : new int[] {10, 20, 40, 80}) {
+            long t0 = System.nanoTime();
+            Mat expected = openWithOpenCV(image, kernel);
+            long t1 = System.nanoTime();
+            Mat actual = openFused(image, kernel);
+            long t2 = System.nanoTime();
+
+            Mat difference = new Mat();
+            Core.absdiff(expected, actual, difference);
+            assertEquals("kernel=" + kernel, 0, Core.countNonZero(difference));
+            Log.i(TAG, String.format("kernel %d: OpenCV %.1f ms, fused %.1f ms, speedup %.2fx",
+                    kernel, (t1 - t0) / 1e6, (t2 - t1) / 1e6, (t1 - t0) / (double) (t2 - t1)));
+            expected.release();
+            actual.release();
+            difference.release();
+        }
+        image.release();
+    }
+
+    private static Mat openWithOpenCV(Mat image, int kernel) {
+        Mat binary = new Mat();
+        Imgproc.threshold(image, binary, 128, 255, Imgproc.THRESH_BINARY);
+        Mat structure = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(1, kernel));
+        Imgproc.erode(binary, binary, structure);
+        Imgproc.dilate(binary, binary, structure);
+        Mat first = new Mat();
+        Core.extractChannel(binary, first, 0);
+        binary.release();
+        structure.release();
+        return first;
+    }
+
+    private static Mat openFused(Mat image, int kernel) {
+        LineOpening opening = new LineOpening(kernel, 128);
+        int channels = image.channels();
+        Mat opened = new Mat(ROWS, COLS, CvType.CV_8UC1);
+        for (int c = 0; c < COLS; c += STRIP_WIDTH) {
+            int width = Math.min(STRIP_WIDTH, COLS - c);
+            Mat srcStrip = image.submat(0, ROWS, c, c + width);
+            Mat dstStrip = opened.submat(0, ROWS, c, c + width);
+            byte[] src = new byte[ROWS * width * channels];
+            byte[] dst = new byte[ROWS * width];
+            srcStrip.get(0, 0, src);
+            for (int j = 0; j < width; j++) {
+                opening.open(src, j * channels, width * channels, ROWS, dst, j, width);
+            }
+            dstStrip.put(0, 0, dst);
+            srcStrip.release();
+            dstStrip.release();
+        }
+        return opened;
+    }
+}
@@ -0,0 +1,82 @@
+package com.asu.hiblatek;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.android.Utils;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that a {@link FiberCounter} over a wrapped luminance plane counts
+ * like one over a single-channel Mat, and compares the time of its analysis
+ * with the RGBA conversion it skips on a 12MP frame. Results are written to
+ * logcat under the {@code hiblatek.bench} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LuminancePathBenchmark {
+    private static final String TAG = "hiblatek.bench";
+    private static final int ROWS = 3000;
+    private static final int COLS = 4000;
+    private static final int ROW_PADDING = 64;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    @Test
+    public void wrappedPlaneCountsLikeMat() {
+        Mat gray = new Mat(ROWS, COLS, CvType.CV_8UC1);
+        Core.randn(gray, 128, 60);
+        Imgproc.blur(gray, gray, new Size(9, 31));
+
+        // lay the frame out like a camera plane, with padded rows
+        int rowStride = COLS + ROW_PADDING;
+        ByteBuffer plane = ByteBuffer.allocateDirect(rowStride * ROWS);
+        byte[] row = new byte[COLS];
+        for (int r = 0; r < ROWS; r++) {
+            gray.get(r, 0, row);
+            plane.position(r * rowStride);
+            plane.put(row);
+        }
+        plane.rewind();
+
+        FiberCounter.Count expected = new FiberCounter(gray).start();
+        long t0 = System.nanoTime();
+        FiberCounter.Count actual = FiberCounter.fromLuminance(plane, COLS, ROWS, rowStride).start();
+        long t1 = System.nanoTime();
+        assertEquals(expected.vertical, actual.vertical);
+        assertEquals(expected.horizontal, actual.horizontal);
+
+        // what the bitmap path spends before the analysis even starts
+        Mat rgba = new Mat();
+        Imgproc.cvtColor(gray, rgba, Imgproc.COLOR_GRAY2RGBA);
+        Bitmap bitmap = Bitmap.createBitmap(COLS, ROWS, Bitmap.Config.ARGB_8888);
+        Utils.matToBitmap(rgba, bitmap);
+        Mat converted = new Mat();
+        long t2 = System.nanoTime();
+        Utils.bitmapToMat(bitmap, converted);
+        long t3 = System.nanoTime();
+
+        Log.i(TAG, String.format("luminance analysis %.1f ms on %d MB; RGBA conversion alone %.1f ms on %d MB",
+                (t1 - t0) / 1e6, gray.total() >> 20, (t3 - t2) / 1e6, (converted.total() * converted.elemSize()) >> 20));
+        gray.release();
+        rgba.release();
+        converted.release();
+        bitmap.recycle();
+    }
+}
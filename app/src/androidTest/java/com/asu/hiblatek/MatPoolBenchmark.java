@@ -0,0 +1,76 @@
+package com.asu.hiblatek;
+
+import android.os.Debug;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.MatPool;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import static org.junit.Assert.*;
+
+/**
+ * Converts a stream of 720p preview frames to RGBA the way
+ * {@code JavaCamera2View} does, once into a new Mat per frame and once into
+ * Mats drawn from a {@link MatPool}, and compares the time and the number
+ * of garbage collections. Results are written to logcat under the
+ * {@code hiblatek.bench} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MatPoolBenchmark {
+    private static final String TAG = "hiblatek.bench";
+    private static final int ROWS = 720;
+    private static final int COLS = 1280;
+    private static final int FRAMES = 300;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    @Test
+    public void pooledFramesAllocateOnce() {
+        Mat yuv = new Mat(ROWS + ROWS / 2, COLS, CvType.CV_8UC1);
+        Core.randu(yuv, 0, 256);
+
+        long gc0 = gcCount();
+        long t0 = System.nanoTime();
+        for (int i = 0; i < FRAMES; i++) {
+            Mat rgba = new Mat();
+            Imgproc.cvtColor(yuv, rgba, Imgproc.COLOR_YUV2RGBA_I420, 4);
+            // like the original frame, the Mat is left to its finalizer
+        }
+        long t1 = System.nanoTime();
+        long gc1 = gcCount();
+
+        MatPool pool = new MatPool(2);
+        for (int i = 0; i < FRAMES; i++) {
+            Mat rgba = pool.acquire(ROWS, COLS, CvType.CV_8UC4);
+            Imgproc.cvtColor(yuv, rgba, Imgproc.COLOR_YUV2RGBA_I420, 4);
+            pool.release(rgba);
+        }
+        long t2 = System.nanoTime();
+        long gc2 = gcCount();
+
+        Log.i(TAG, String.format("%d frames: new Mat %.1f ms, %d GCs; pooled %.1f ms, %d GCs; %s",
+                FRAMES, (t1 - t0) / 1e6, gc1 - gc0, (t2 - t1) / 1e6, gc2 - gc1, pool));
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getOutstandingBytes());
+        assertTrue(pool.getHitRate() > 0.99);
+        pool.clear();
+        yuv.release();
+    }
+
+    private static long gcCount() {
+        String count = Debug.getRuntimeStat("art.gc.gc-count");
+        return count == null ? -1 : Long.parseLong(count);
+    }
+}
@@ -0,0 +1,70 @@
+package com.asu.hiblatek;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link MatScope}, which needs the native OpenCV
+ * library.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MatScopeTest {
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    @Test
+    public void releasesEveryMatOnClose() {
+        Mat a, b;
+        try (MatScope scope = new MatScope(false)) {
+            a = scope.newMat(100, 100, CvType.CV_8UC1);
+            b = scope.track(new Mat(10, 10, CvType.CV_8UC4));
+        }
+        assertTrue(a.empty());
+        assertTrue(b.empty());
+    }
+
+    @Test
+    public void recordsPeakBytesPerStage() {
+        MatScope scope = new MatScope(true);
+        scope.enter("first");
+        Mat a = scope.newMat(100, 100, CvType.CV_8UC1);
+        Mat b = scope.newMat(100, 100, CvType.CV_8UC4);
+        scope.release(b);
+        scope.enter("second");
+        scope.release(a);
+        scope.close();
+
+        Map<String, Long> peaks = scope.getPeakBytes();
+        assertEquals(Long.valueOf(50_000), peaks.get("first"));
+        assertEquals(Long.valueOf(10_000), peaks.get("second"));
+        assertEquals(0, scope.getLeakCount());
+    }
+
+    @Test
+    public void flagsMatsLeftToTheScope() {
+        MatScope scope = new MatScope(true);
+        scope.newMat(10, 10, CvType.CV_8UC1);
+        scope.close();
+        assertEquals(1, scope.getLeakCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsForeignMats() {
+        try (MatScope scope = new MatScope(false)) {
+            scope.release(new Mat());
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.asu.hiblatek;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.MatPool;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.android.PooledYuvFrame;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Instrumented tests for {@link PooledYuvFrame}, which converts the preview
+ * frames of {@code JavaCamera2View}. Streams of synthetic frames laid out
+ * like the planes of a camera image, with row padding, are converted and
+ * compared with a conversion of the same pixels in I420, and the pool is
+ * checked to hand out the same buffers frame after frame.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PooledYuvFrameTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+    private static final int FRAMES = 50;
+    private static final int PADDING = 16;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    @Test
+    public void convertsPlanarFramesFromThePool() {
+        convertStream(false);
+    }
+
+    @Test
+    public void convertsInterleavedFramesFromThePool() {
+        convertStream(true);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsAFrameThatWasNotReleased() {
+        byte[] i420 = new byte[WIDTH * HEIGHT * 3 / 2];
+        PooledYuvFrame frame = new PooledYuvFrame(new MatPool(2));
+        setPlanar(frame, i420);
+        frame.gray();
+        setPlanar(frame, i420);
+    }
+
+    private static void convertStream(boolean interleaved) {
+        Random random = new Random(1);
+        MatPool pool = new MatPool(2);
+        PooledYuvFrame frame = new PooledYuvFrame(pool);
+        byte[] i420 = new byte[WIDTH * HEIGHT * 3 / 2];
+        Mat reference = new Mat(HEIGHT + HEIGHT / 2, WIDTH, CvType.CV_8UC1);
+        Mat expected = new Mat();
+        Mat y = new Mat();
+
+        for (int i = 0; i < FRAMES; i++) {
+            random.nextBytes(i420);
+            if (interleaved)
+                setInterleaved(frame, i420);
+            else
+                setPlanar(frame, i420);
+
+            reference.put(0, 0, i420);
+            Imgproc.cvtColor(reference, expected, Imgproc.COLOR_YUV2RGBA_I420, 4);
+            reference.rowRange(0, HEIGHT).copyTo(y);
+            assertEquals(0, Core.norm(y, frame.gray(), Core.NORM_INF), 0);
+            assertEquals(0, Core.norm(expected, frame.rgba(), Core.NORM_INF), 0);
+            frame.release();
+        }
+
+        // the gray, I420 and RGBA buffers are allocated once
+        assertEquals(3, pool.getMisses());
+        assertEquals(0, pool.getOutstandingBytes());
+        assertTrue(pool.getHitRate() > 0.9);
+        pool.clear();
+        reference.release();
+        expected.release();
+        y.release();
+    }
+
+    /**
+     * Lays the frame out as three planes, each with padded rows.
+     */
+    private static void setPlanar(PooledYuvFrame frame, byte[] i420) {
+        int chromaWidth = WIDTH / 2;
+        int chromaHeight = HEIGHT / 2;
+        ByteBuffer yPlane = plane(i420, 0, WIDTH, HEIGHT, 1, WIDTH + PADDING);
+        ByteBuffer uPlane = plane(i420, WIDTH * HEIGHT, chromaWidth, chromaHeight, 1,
+                chromaWidth + PADDING);
+        ByteBuffer vPlane = plane(i420, WIDTH * HEIGHT + chromaWidth * chromaHeight,
+                chromaWidth, chromaHeight, 1, chromaWidth + PADDING);
+        frame.set(WIDTH, HEIGHT, yPlane, WIDTH + PADDING, uPlane, vPlane,
+                chromaWidth + PADDING, 1);
+    }
+
+    /**
+     * Lays the frame out like NV21: the U plane starts one byte into the
+     * interleaved V plane, and both end at the last sample of their own.
+     */
+    private static void setInterleaved(PooledYuvFrame frame, byte[] i420) {
+        int chromaWidth = WIDTH / 2;
+        int chromaHeight = HEIGHT / 2;
+        int rowStride = WIDTH + PADDING;
+        ByteBuffer yPlane = plane(i420, 0, WIDTH, HEIGHT, 1, rowStride);
+        ByteBuffer vu = ByteBuffer.allocateDirect((chromaHeight - 1) * rowStride + WIDTH);
+        for (int r = 0; r < chromaHeight; r++) {
+            for (int c = 0; c < chromaWidth; c++) {
+                int sample = r * chromaWidth + c;
+                vu.put(r * rowStride + 2 * c, i420[WIDTH * HEIGHT + chromaWidth * chromaHeight + sample]);
+                vu.put(r * rowStride + 2 * c + 1, i420[WIDTH * HEIGHT + sample]);
+            }
+        }
+        vu.limit(vu.capacity() - 1);
+        ByteBuffer vPlane = vu.slice();
+        vu.limit(vu.capacity()).position(1);
+        ByteBuffer uPlane = vu.slice();
+        frame.set(WIDTH, HEIGHT, yPlane, rowStride, uPlane, vPlane, rowStride, 2);
+    }
+
+    /**
+     * Copies a plane of the I420 array into a direct buffer with the given
+     * strides; the last row has no padding, like a camera plane.
+     */
+    private static ByteBuffer plane(byte[] i420, int offset, int width, int height,
+                                    int pixelStride, int rowStride) {
+        ByteBuffer plane = ByteBuffer.allocateDirect((height - 1) * rowStride
+                + (width - 1) * pixelStride + 1);
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++)
+                plane.put(r * rowStride + c * pixelStride, i420[offset + r * width + c]);
+        }
+        return plane;
+    }
+}
@@ -0,0 +1,122 @@
+package com.asu.hiblatek;
+
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the per-pixel {@code Mat.get(i, j)} scan with the bulk
+ * scanline scan used by {@link FiberCounter} on a 12MP RGBA frame, and
+ * reports how the parallel scan scales with the number of workers.
+ * Results are written to logcat under the {@code hiblatek.bench} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScanlineBenchmark {
+    private static final String TAG = "hiblatek.bench";
+    private static final int ROWS = 3000;
+    private static final int COLS = 4000;
+    private static final int PITCH = 25;
+    private static final int STEP = ROWS * 3 / 100;
+
+    @BeforeClass
+    public static void loadOpenCV() {
+        assertTrue(OpenCVLoader.initDebug());
+    }
+
+    @Test
+    public void bulkScanMatchesAndBeatsPerPixelScan() {
+        Mat image = stripes();
+        double megapixels = ROWS * (double) COLS / 1e6;
+
+        long t0 = System.nanoTime();
+        int perPixel = perPixelMaxRuns(image);
+        long t1 = System.nanoTime();
+        int bulk = bulkMaxRuns(image);
+        long t2 = System.nanoTime();
+
+        assertEquals(perPixel, bulk);
+        double perPixelMs = (t1 - t0) / 1e6;
+        double bulkMs = (t2 - t1) / 1e6;
+        Log.i(TAG, String.format("per-pixel: %.2f ms/MP, bulk: %.2f ms/MP, speedup: %.1fx",
+                perPixelMs / megapixels, bulkMs / megapixels, perPixelMs / bulkMs));
+        image.release();
+    }
+
+    @Test
+    public void parallelScanScaling() {
+        Mat image = stripes();
+        int[] rows = ScanlineCounter.sampleLines(image.rows(), 10, 1);
+        LineSource source = MatLineSource.rows(image);
+        ScanlineCounter.Result expected = new ScanlineCounter().count(source, rows, 0);
+
+        long baseline = 0;
+        for (int workers : new int[] {1, 2, 4, 8}) {
+            ScanlineCounter counter = new ScanlineCounter(workers);
+            counter.count(source, rows, 0); // warm up
+            long t0 = System.nanoTime();
+            ScanlineCounter.Result result = counter.count(source, rows, 0);
+            long elapsed = System.nanoTime() - t0;
+            if (workers == 1) baseline = elapsed;
+
+            assertArrayEquals(expected.counts, result.counts);
+            Log.i(TAG, String.format("%d worker(s): %.2f ms, scaling: %.2fx",
+                    workers, elapsed / 1e6, baseline / (double) elapsed));
+        }
+        image.release();
+    }
+
+    /**
+     * Builds an RGBA image of vertical white stripes on black.
+     */
+    private static Mat stripes() {
+        Mat image = new Mat(ROWS, COLS, CvType.CV_8UC4, new Scalar(0, 0, 0, 255));
+        for (int x = 0; x < COLS; x += PITCH) {
+            Imgproc.rectangle(image, new Rect(x, 0, PITCH / 2, ROWS), new Scalar(255, 255, 255, 255), -1);
+        }
+        return image;
+    }
+
+    private static int perPixelMaxRuns(Mat image) {
+        int max = 0;
+        for (int i = 10; i < image.rows() - 10; i += STEP) {
+            int count = 0;
+            boolean wasLastWhite = false;
+            for (int j = 0; j < image.cols(); j++) {
+                if (image.get(i, j)[0] == 255) {
+                    if (!wasLastWhite) {
+                        count++;
+                        wasLastWhite = true;
+                    }
+                }
+                else if (wasLastWhite) {
+                    wasLastWhite = false;
+                }
+            }
+            max = Math.max(max, count);
+        }
+        return max;
+    }
+
+    private static int bulkMaxRuns(Mat image) {
+        int max = 0;
+        int channels = image.channels();
+        byte[] row = new byte[image.cols() * channels];
+        for (int i = 10; i < image.rows() - 10; i += STEP) {
+            image.get(i, 0, row);
+            max = Math.max(max, ScanlineScanner.countWhiteRuns(row, 0, image.cols(), channels, null));
+        }
+        return max;
+    }
+}
@@ -0,0 +1,199 @@
+package com.asu.hiblatek;
+
+import java.util.Arrays;
+
+/**
+ * Counts only as many sampled scanlines as it takes for their counts to
+ * settle.
+ * <p>
+ * The lines of the fixed sampling are visited in bit-reversed order, so
+ * that every prefix of the visit is spread evenly over the image. After
+ * every batch the counts seen so far are checked: once there are
+ * {@link #MIN_LINES} of them, their spread relative to their mean is within
+ * the tolerance and the highest count has not grown for half of the lines,
+ * the remaining lines are skipped. A run-length encoded source still has
+ * every skipped line whose number of runs exceeds the highest count
+ * counted, so the highest count is always the one of the fixed sampling.
+ * Lines that disagree keep the visit going over every fixed line and then
+ * over the lines halfway between them.
+ *
+ * @author Kirk M. Hilario
+ */
+class AdaptiveLineSampler {
+    /**
+     * Default largest spread of the counts, as a fraction of their mean,
+     * for the visit to stop early.
+     */
+    static final double DEFAULT_TOLERANCE = 0.05;
+    /**
+     * Fewest lines counted before the visit may stop.
+     */
+    static final int MIN_LINES = 8;
+    private final double tolerance;
+    private final ScanlineCounter counter;
+    private final int batch;
+
+    /**
+     * Creates a sampler.
+     * @param tolerance     Largest relative spread of the counts for the
+     *                      visit to stop early.
+     * @param parallelism   Number of threads counting every batch of lines.
+     */
+    AdaptiveLineSampler(double tolerance, int parallelism) {
+        if (!(tolerance > 0))
+            throw new IllegalArgumentException("tolerance must be positive: " + tolerance);
+        this.tolerance = tolerance;
+        this.counter = new ScanlineCounter(parallelism);
+        this.batch = Math.max(MIN_LINES / 2, 2 * parallelism);
+    }
+
+    /**
+     * Returns the positions {@code 0} to {@code n - 1} in bit-reversed order.
+     * @param n Number of positions.
+     * @return  The positions in visiting order.
+     */
+    static int[] bitReversedOrder(int n) {
+        int bits = 0;
+        while ((1 << bits) < n) bits++;
+        int[] order = new int[n];
+        int k = 0;
+        for (int i = 0; i < (1 << bits); i++) {
+            int r = (bits == 0) ? 0 : Integer.reverse(i) >>> (32 - bits);
+            if (r < n) order[k++] = r;
+        }
+        return order;
+    }
+
+    /**
+     * Counts the white runs of the sampled lines until their counts settle.
+     * The counts of the lines that were skipped are not known.
+     * @param source    The scanlines.
+     * @param increment Distance between two lines of the fixed sampling.
+     * @param margin    Lines skipped at both ends.
+     * @param from      First pixel of every line to inspect.
+     * @return          The counts of the visited lines, in line order.
+     */
+    ScanlineCounter.Result count(LineSource source, int increment, int margin, int from) {
+        int[] fixed = ScanlineCounter.sampleLines(source.lineCount(), margin, increment);
+        Visit visit = new Visit(source, from);
+        if (visit.until(fixed)) {
+            if (source instanceof RunLengthMask)
+                visit.untilMaximum(fixed, (RunLengthMask) source);
+        }
+        else {
+            visit.until(between(fixed, increment / 2, source.lineCount() - margin));
+        }
+        return visit.result();
+    }
+
+    /**
+     * Returns the lines {@code half} lines after every sampled line that
+     * come before {@code end}.
+     */
+    private static int[] between(int[] lines, int half, int end) {
+        if (half == 0) return new int[0];
+        int n = 0;
+        while (n < lines.length && lines[n] + half < end) n++;
+        int[] between = new int[n];
+        for (int k = 0; k < n; k++)
+            between[k] = lines[k] + half;
+        return between;
+    }
+
+    /**
+     * The lines counted so far and the statistics of their counts.
+     */
+    private class Visit {
+        private final LineSource source;
+        private final int from;
+        private final boolean[] visited;
+        private final int[] counts;
+        private final int[][] runStarts;
+        private final LineCountStatistics statistics = new LineCountStatistics();
+        private int lineCount = 0;
+        private int max = 0;
+        private int sinceMax = 0;
+
+        Visit(LineSource source, int from) {
+            this.source = source;
+            this.from = from;
+            this.visited = new boolean[source.lineCount()];
+            this.counts = new int[source.lineCount()];
+            this.runStarts = new int[source.lineCount()][];
+        }
+
+        /**
+         * Counts the lines in bit-reversed order, one batch at a time,
+         * until the counts converge.
+         * @param lines The lines to visit, in line order.
+         * @return      {@code true} if the visit stopped early
+         */
+        boolean until(int[] lines) {
+            int[] order = bitReversedOrder(lines.length);
+            for (int k = 0; k < order.length; k += batch) {
+                int[] next = new int[Math.min(batch, order.length - k)];
+                for (int b = 0; b < next.length; b++)
+                    next[b] = lines[order[k + b]];
+                add(next);
+                if (hasConverged(statistics, sinceMax))
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Counts every line that was skipped and has more runs than the
+         * highest count so far, so that no skipped line could raise it.
+         */
+        void untilMaximum(int[] lines, RunLengthMask mask) {
+            int n = 0;
+            int[] above = new int[lines.length];
+            for (int line : lines) {
+                if (!visited[line] && mask.hasBlackPixel(line) && mask.runCount(line) > max)
+                    above[n++] = line;
+            }
+            if (n > 0)
+                add(Arrays.copyOf(above, n));
+        }
+
+        private void add(int[] lines) {
+            ScanlineCounter.Result result = counter.count(source, lines, from);
+            for (int k = 0; k < lines.length; k++) {
+                int line = lines[k];
+                visited[line] = true;
+                counts[line] = result.counts[k];
+                runStarts[line] = result.runStarts[k];
+                lineCount++;
+                if (!result.isValid(k)) continue;
+                statistics.add(result.counts[k]);
+                if (result.counts[k] > max) {
+                    max = result.counts[k];
+                    sinceMax = 0;
+                }
+                else {
+                    sinceMax++;
+                }
+            }
+        }
+
+        ScanlineCounter.Result result() {
+            int[] lines = new int[lineCount];
+            for (int line = 0, k = 0; line < visited.length; line++) {
+                if (visited[line]) lines[k++] = line;
+            }
+            ScanlineCounter.Result merged = new ScanlineCounter.Result(lines);
+            for (int k = 0; k < lines.length; k++) {
+                merged.counts[k] = counts[lines[k]];
+                merged.runStarts[k] = runStarts[lines[k]];
+            }
+            return merged;
+        }
+    }
+
+    private boolean hasConverged(LineCountStatistics statistics, int sinceMax) {
+        int n = statistics.count();
+        return n >= MIN_LINES
+                && 2 * sinceMax >= n
+                && statistics.standardDeviation() <= tolerance * Math.max(1, statistics.mean());
+    }
+}
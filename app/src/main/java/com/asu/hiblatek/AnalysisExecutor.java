@@ -0,0 +1,208 @@
+package com.asu.hiblatek;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs {@link FiberCounter} analyses one at a time on a dedicated thread.
+ * <p>
+ * Submitting a photo cancels the analysis still running for the previous
+ * one. Stages and results are posted to the main thread, and a job's
+ * callbacks stop as soon as it is cancelled, so the caller never sees a
+ * result for a photo that was replaced.
+ *
+ * @author Kirk M. Hilario
+ */
+class AnalysisExecutor {
+    private static final String TAG = "hiblatek.Analysis";
+
+    /**
+     * Receives the progress and outcome of an analysis on the main thread.
+     */
+    interface Callback {
+        /**
+         * Called when a stage of the analysis begins.
+         * @param stage The stage that begins.
+         */
+        void onStage(FiberCounter.Stage stage);
+
+        /**
+         * Called when the analysis is finished. The receiver owns the counter
+         * and releases it once its images are no longer needed.
+         * @param counter   The counter, ready to render its result images.
+         * @param count     The resulting count.
+         */
+        void onResult(FiberCounter counter, FiberCounter.Count count);
+
+        /**
+         * Called when the analysis failed.
+         * @param error The cause of the failure.
+         */
+        void onError(Throwable error);
+    }
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hiblatek-analysis");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Context context;
+    private final int parallelism;
+    private final FiberCounter.AnalysisMode analysisMode;
+    private EngineSelector.Profile engineProfile = null;
+    private double engineBudgetMillis = 0;
+    private double samplingTolerance = 0;
+    private Job current = null;
+
+    /**
+     * Creates an executor.
+     * @param context       The application context; an activity would leak.
+     * @param parallelism   Number of threads each analysis may count with.
+     * @param analysisMode  Resolution at which photos are analysed.
+     */
+    AnalysisExecutor(Context context, int parallelism, FiberCounter.AnalysisMode analysisMode) {
+        this.context = context;
+        this.parallelism = parallelism;
+        this.analysisMode = analysisMode;
+    }
+
+    /**
+     * Makes the photos submitted from now on choose their counting engine.
+     * Must be called on the main thread.
+     * @param profile       How much robustness to trade for speed; {@code null}
+     *                      to count every photo with the default engine.
+     * @param budgetMillis  Time the thresholding, opening and counting may take.
+     */
+    void setEngineProfile(EngineSelector.Profile profile, double budgetMillis) {
+        this.engineProfile = profile;
+        this.engineBudgetMillis = budgetMillis;
+    }
+
+    /**
+     * Makes the photos submitted from now on count only as many scanlines
+     * as it takes for their counts to agree. Must be called on the main thread.
+     * @param tolerance Largest relative spread of the counts for the
+     *                  sampling to stop early; {@code 0} counts every line.
+     */
+    void setSamplingTolerance(double tolerance) {
+        this.samplingTolerance = tolerance;
+    }
+
+    /**
+     * Cancels the current analysis, if any, and starts analysing the photo.
+     * Must be called on the main thread.
+     * @param photo     Decodes the photo to analyse on the analysing thread.
+     * @param callback  Receives the progress and outcome.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    void submit(Callable<Bitmap> photo, Callback callback) {
+        cancel();
+        Job job = new Job(photo, callback);
+        job.future = worker.submit(job);
+        current = job;
+    }
+
+    /**
+     * Cancels the current analysis. Its callbacks are not called any more.
+     * Must be called on the main thread.
+     */
+    void cancel() {
+        if (current != null) {
+            current.cancelled = true;
+            current.future.cancel(true);
+            current = null;
+        }
+    }
+
+    /**
+     * Cancels the current analysis and stops the analysing thread.
+     */
+    void shutdown() {
+        cancel();
+        worker.shutdownNow();
+    }
+
+    /**
+     * One analysis. Everything the worker reports goes through
+     * {@link #post(Runnable)}, which drops it once the job is cancelled;
+     * cancelling and delivering both happen on the main thread. A counter
+     * whose result is dropped is released instead.
+     */
+    private class Job implements Runnable {
+        private final Callable<Bitmap> photo;
+        private final EngineSelector.Profile engineProfile = AnalysisExecutor.this.engineProfile;
+        private final double engineBudgetMillis = AnalysisExecutor.this.engineBudgetMillis;
+        private final double samplingTolerance = AnalysisExecutor.this.samplingTolerance;
+        private final Callback callback;
+        private Future<?> future;
+        private boolean cancelled = false;
+
+        Job(Callable<Bitmap> photo, Callback callback) {
+            this.photo = photo;
+            this.callback = callback;
+        }
+
+        @RequiresApi(api = Build.VERSION_CODES.Q)
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            // released here unless it was handed to the main thread
+            FiberCounter owned = null;
+            try {
+                post(() -> callback.onStage(FiberCounter.Stage.DECODING));
+                AnalysisMetrics metrics = new AnalysisMetrics(BuildConfig.DEBUG);
+                long t = metrics.begin(AnalysisMetrics.Timer.DECODE);
+                Bitmap bitmap = photo.call();
+                metrics.end(AnalysisMetrics.Timer.DECODE, t);
+                if (Thread.currentThread().isInterrupted())
+                    throw new CancellationException("analysis cancelled");
+                post(() -> callback.onStage(FiberCounter.Stage.CROPPING));
+                FiberCounter counter = new FiberCounter(bitmap, context, metrics);
+                owned = counter;
+                counter.setParallelism(parallelism);
+                counter.setAnalysisMode(analysisMode);
+                counter.setEngineProfile(engineProfile, engineBudgetMillis);
+                counter.setSamplingTolerance(samplingTolerance);
+                counter.setProgressListener(stage -> post(() -> callback.onStage(stage)));
+                FiberCounter.Count count = counter.start();
+                Log.v(TAG, "Analysed in " + (System.nanoTime() - start) / 1000000 + " ms: " + metrics.snapshot());
+                owned = null;
+                mainHandler.post(() -> {
+                    // a result nobody will see gives its native memory back at once
+                    if (cancelled) counter.release();
+                    else callback.onResult(counter, count);
+                });
+            }
+            catch (CancellationException e) {
+                Log.v(TAG, "Analysis cancelled after " + (System.nanoTime() - start) / 1000000 + " ms");
+            }
+            catch (Throwable e) {
+                // an OutOfMemoryError would otherwise vanish into the future
+                Log.e(TAG, "Analysis failed", e);
+                post(() -> callback.onError(e));
+            }
+            finally {
+                if (owned != null) owned.release();
+            }
+        }
+
+        private void post(Runnable action) {
+            mainHandler.post(() -> {
+                if (!cancelled) action.run();
+            });
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.asu.hiblatek;
+
+import android.os.Trace;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Times the stages of an analysis and counts the work they did.
+ * <p>
+ * Stages are timed between {@link #begin(Timer)} and
+ * {@link #end(Timer, long)}, which also open and close an
+ * {@code android.os.Trace} section so the stages show up in system traces.
+ * Counters are added once per stage, from totals the stage already has,
+ * so nothing is ever recorded inside a per-pixel loop. A disabled instance
+ * does nothing beyond testing a final field.
+ * <p>
+ * The methods are thread-safe; the UI may take a {@link #snapshot()}
+ * while an analysis runs.
+ *
+ * @author Kirk M. Hilario
+ */
+final class AnalysisMetrics {
+    /**
+     * An instance that records nothing.
+     */
+    static final AnalysisMetrics DISABLED = new AnalysisMetrics(false);
+
+    /**
+     * The timed stages.
+     */
+    enum Timer {
+        DECODE("hiblatek:decode"),
+        BITMAP_TO_MAT("hiblatek:bitmapToMat"),
+        CROP("hiblatek:crop"),
+        RESIZE("hiblatek:resize"),
+        THRESHOLD("hiblatek:threshold"),
+        MORPHOLOGY("hiblatek:morphology"),
+        COUNT("hiblatek:count"),
+        ANNOTATE("hiblatek:annotate"),
+        MAT_TO_BITMAP("hiblatek:matToBitmap");
+
+        /**
+         * Name of the trace section.
+         */
+        final String section;
+
+        Timer(String section) {
+            this.section = section;
+        }
+    }
+
+    /**
+     * The counted quantities.
+     */
+    enum Counter {
+        /**
+         * Pixels read by the counting engines.
+         */
+        PIXELS_SCANNED,
+        /**
+         * Black to white transitions, or profile peaks, that were found.
+         */
+        TRANSITIONS
+    }
+
+    private final boolean enabled;
+    private final long[] nanos = new long[Timer.values().length];
+    private final int[] calls = new int[Timer.values().length];
+    private final long[] counters = new long[Counter.values().length];
+
+    /**
+     * Creates a set of metrics.
+     * @param enabled   {@code false} to record nothing.
+     */
+    AnalysisMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Checks if the metrics are recorded.
+     * @return {@code true} if they are
+     */
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts timing a stage.
+     * @param timer The stage.
+     * @return      The start time to pass to {@link #end(Timer, long)}.
+     */
+    long begin(Timer timer) {
+        if (!enabled)
+            return 0;
+        Trace.beginSection(timer.section);
+        return System.nanoTime();
+    }
+
+    /**
+     * Stops timing a stage. Every call must follow a {@link #begin(Timer)}
+     * on the same thread.
+     * @param timer The stage.
+     * @param start The value returned by {@link #begin(Timer)}.
+     */
+    void end(Timer timer, long start) {
+        if (!enabled)
+            return;
+        long elapsed = System.nanoTime() - start;
+        Trace.endSection();
+        synchronized (this) {
+            nanos[timer.ordinal()] += elapsed;
+            calls[timer.ordinal()]++;
+        }
+    }
+
+    /**
+     * Adds to a counter.
+     * @param counter   The counter.
+     * @param amount    Amount to add.
+     */
+    void add(Counter counter, long amount) {
+        if (!enabled)
+            return;
+        synchronized (this) {
+            counters[counter.ordinal()] += amount;
+        }
+    }
+
+    /**
+     * Returns the metrics recorded so far.
+     * @return an immutable copy of the metrics
+     */
+    synchronized Snapshot snapshot() {
+        Map<Timer, Long> times = new EnumMap<>(Timer.class);
+        Map<Timer, Integer> counts = new EnumMap<>(Timer.class);
+        for (Timer timer : Timer.values()) {
+            if (calls[timer.ordinal()] > 0) {
+                times.put(timer, nanos[timer.ordinal()]);
+                counts.put(timer, calls[timer.ordinal()]);
+            }
+        }
+        Map<Counter, Long> totals = new EnumMap<>(Counter.class);
+        for (Counter counter : Counter.values())
+            totals.put(counter, counters[counter.ordinal()]);
+        return new Snapshot(times, counts, totals);
+    }
+
+    /**
+     * The metrics of an analysis at one point in time.
+     */
+    static class Snapshot {
+        private final Map<Timer, Long> nanos;
+        private final Map<Timer, Integer> calls;
+        private final Map<Counter, Long> counters;
+
+        private Snapshot(Map<Timer, Long> nanos, Map<Timer, Integer> calls, Map<Counter, Long> counters) {
+            this.nanos = nanos;
+            this.calls = calls;
+            this.counters = counters;
+        }
+
+        /**
+         * Returns the total time spent in a stage.
+         * @param timer The stage.
+         * @return      The time in milliseconds; {@code 0} if it never ran.
+         */
+        double millis(Timer timer) {
+            Long n = nanos.get(timer);
+            return (n == null) ? 0 : n / 1e6;
+        }
+
+        /**
+         * Returns how many times a stage ran.
+         * @param timer The stage.
+         * @return      The number of runs.
+         */
+        int calls(Timer timer) {
+            Integer n = calls.get(timer);
+            return (n == null) ? 0 : n;
+        }
+
+        /**
+         * Returns the value of a counter.
+         * @param counter   The counter.
+         * @return          Its value.
+         */
+        long count(Counter counter) {
+            return counters.get(counter);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Timer timer : nanos.keySet())
+                sb.append(String.format(Locale.US, "%s %.1f ms, ", timer.name().toLowerCase(Locale.US), millis(timer)));
+            for (Map.Entry<Counter, Long> entry : counters.entrySet())
+                sb.append(entry.getKey().name().toLowerCase(Locale.US)).append(' ').append(entry.getValue()).append(", ");
+            return sb.length() == 0 ? "" : sb.substring(0, sb.length() - 2);
+        }
+    }
+}
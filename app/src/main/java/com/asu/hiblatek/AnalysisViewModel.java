@@ -0,0 +1,181 @@
+package com.asu.hiblatek;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+/**
+ * Keeps the analysis of the current photo alive across configuration changes.
+ * <p>
+ * The analysis runs on an {@link AnalysisExecutor} owned by this model, so a
+ * recreated activity observes the same job instead of starting a new one,
+ * and nothing on the analysing thread refers to an activity.
+ *
+ * @author Kirk M. Hilario
+ */
+public class AnalysisViewModel extends AndroidViewModel {
+    /**
+     * File of the preferences kept by the model.
+     */
+    static final String PREFERENCES = "hiblatek.analysis";
+    /**
+     * Preference holding the name of the {@link EngineSelector.Profile} used
+     * to choose the counting engine, or {@link #FIXED_ENGINE}.
+     */
+    static final String PREF_ENGINE_PROFILE = "hiblatek.engineProfile";
+    /**
+     * Preference value that counts every photo with the default engine.
+     * Also the default, since the cost coefficients of the engines are not
+     * calibrated on devices yet.
+     */
+    static final String FIXED_ENGINE = "FIXED";
+    /**
+     * Time the thresholding, opening and counting of a photo may take.
+     */
+    static final double ENGINE_BUDGET_MILLIS = 500;
+    /**
+     * The outcome of a finished analysis.
+     */
+    static class Analysis {
+        /**
+         * The counter, ready to render its result images; {@code null} on
+         * failure. Owned by the model, which releases it when the analysis
+         * is replaced.
+         */
+        final FiberCounter counter;
+        final FiberCounter.Count count;
+        /**
+         * The cause of the failure; {@code null} on success.
+         */
+        final Throwable error;
+
+        Analysis(FiberCounter counter, FiberCounter.Count count, Throwable error) {
+            this.counter = counter;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final AnalysisExecutor executor;
+    private final SampledImageLoader loader;
+    private final MutableLiveData<FiberCounter.Stage> stage = new MutableLiveData<>();
+    private final MutableLiveData<Analysis> analysis = new MutableLiveData<>();
+
+    public AnalysisViewModel(@NonNull Application application) {
+        super(application);
+        this.executor = new AnalysisExecutor(application,
+                Runtime.getRuntime().availableProcessors(), FiberCounter.AnalysisMode.ADAPTIVE);
+        this.executor.setSamplingTolerance(AdaptiveLineSampler.DEFAULT_TOLERANCE);
+        this.loader = new SampledImageLoader(application.getContentResolver(),
+                SampledImageLoader.DEFAULT_MAX_PIXELS);
+    }
+
+    /**
+     * Returns the profile that chooses the counting engine of every photo.
+     * @return the profile, or {@code null} for the default engine
+     */
+    EngineSelector.Profile getEngineProfile() {
+        String name = preferences().getString(PREF_ENGINE_PROFILE, FIXED_ENGINE);
+        if (FIXED_ENGINE.equals(name))
+            return null;
+        try {
+            return EngineSelector.Profile.valueOf(name);
+        }
+        catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Sets the profile that chooses the counting engine of the next photos.
+     * @param profile   The profile, or {@code null} for the default engine.
+     */
+    void setEngineProfile(EngineSelector.Profile profile) {
+        preferences().edit()
+                .putString(PREF_ENGINE_PROFILE, profile == null ? FIXED_ENGINE : profile.name())
+                .apply();
+    }
+
+    private SharedPreferences preferences() {
+        return getApplication().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns the stage of the running analysis.
+     * @return the stage, or {@code null} when nothing runs
+     */
+    LiveData<FiberCounter.Stage> getStage() {
+        return stage;
+    }
+
+    /**
+     * Returns the outcome of the latest analysis.
+     * @return the outcome, or {@code null} while there is none
+     */
+    LiveData<Analysis> getAnalysis() {
+        return analysis;
+    }
+
+    /**
+     * Starts analysing a photo, cancelling the analysis of the previous one.
+     * The photo is decoded on the analysing thread.
+     * @param uri   The photo to analyse.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    void analyze(Uri uri) {
+        replaceAnalysis(null);
+        executor.setEngineProfile(getEngineProfile(), ENGINE_BUDGET_MILLIS);
+        executor.submit(() -> loader.load(uri), new AnalysisExecutor.Callback() {
+            @Override
+            public void onStage(FiberCounter.Stage s) {
+                stage.setValue(s);
+            }
+
+            @Override
+            public void onResult(FiberCounter counter, FiberCounter.Count count) {
+                stage.setValue(null);
+                replaceAnalysis(new Analysis(counter, count, null));
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                stage.setValue(null);
+                replaceAnalysis(new Analysis(null, null, error));
+            }
+        });
+    }
+
+    /**
+     * Cancels the running analysis and forgets the latest outcome.
+     */
+    void clear() {
+        executor.cancel();
+        stage.setValue(null);
+        replaceAnalysis(null);
+    }
+
+    /**
+     * Publishes a new outcome and then releases the counter of the one it
+     * replaces, so observers let go of the old results first.
+     */
+    private void replaceAnalysis(Analysis next) {
+        Analysis previous = analysis.getValue();
+        analysis.setValue(next);
+        if (previous != null && previous.counter != null)
+            previous.counter.release();
+    }
+
+    @Override
+    protected void onCleared() {
+        executor.shutdown();
+        replaceAnalysis(null);
+    }
+}
@@ -0,0 +1,105 @@
+package com.asu.hiblatek;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An annotated view of an image that is only copied when it is needed.
+ * <p>
+ * Line segments are recorded as they are found. Until {@link #getImage()}
+ * is called the canvas shares the pixels of the base image; the first call
+ * copies the base image once and draws every recorded segment on the copy.
+ * A single-channel base image is converted to RGBA as it is copied so that
+ * the segments keep their colour.
+ *
+ * @author Kirk M. Hilario
+ */
+class AnnotationCanvas {
+    private final Mat base;
+    private final Scalar color;
+    private final int thickness;
+    private final List<Point> begPoints = new ArrayList<>();
+    private final List<Point> endPoints = new ArrayList<>();
+    /**
+     * The annotated copy, or {@code null} while it has not been requested.
+     */
+    private Mat image;
+
+    /**
+     * Creates a canvas over the base image.
+     * @param base      The image to annotate; it is never modified.
+     * @param color     Colour of the annotation lines.
+     * @param thickness Thickness of the annotation lines.
+     */
+    AnnotationCanvas(Mat base, Scalar color, int thickness) {
+        this.base = base;
+        this.color = color;
+        this.thickness = thickness;
+    }
+
+    /**
+     * Records line segments to be drawn on the canvas.
+     * @param begPoints Start of every segment.
+     * @param endPoints End of every segment.
+     */
+    void addLines(List<Point> begPoints, List<Point> endPoints) {
+        int end = Math.min(begPoints.size(), endPoints.size());
+        int first = this.begPoints.size();
+        this.begPoints.addAll(begPoints.subList(0, end));
+        this.endPoints.addAll(endPoints.subList(0, end));
+        if (image != null)
+            draw(first);
+    }
+
+    /**
+     * Returns the annotated image, copying the base image on the first call.
+     * If nothing was recorded yet, a colour base image itself is returned.
+     * @return the annotated image
+     */
+    Mat getImage() {
+        if (image == null) {
+            if (base.channels() == 1) {
+                image = new Mat();
+                Imgproc.cvtColor(base, image, Imgproc.COLOR_GRAY2RGBA);
+            }
+            else if (begPoints.isEmpty()) {
+                return base;
+            }
+            else {
+                image = base.clone();
+            }
+            draw(0);
+        }
+        return image;
+    }
+
+    /**
+     * Checks if the annotated copy has been made.
+     * @return {@code true} if the canvas holds its own pixels
+     */
+    boolean isMaterialized() {
+        return image != null;
+    }
+
+    /**
+     * Releases the annotated copy. The recorded segments are kept, so the
+     * copy is made again by the next call to {@link #getImage()}.
+     */
+    void release() {
+        if (image != null) {
+            image.release();
+            image = null;
+        }
+    }
+
+    private void draw(int first) {
+        for (int i = first; i < begPoints.size(); i++) {
+            Imgproc.line(image, begPoints.get(i), endPoints.get(i), color, thickness);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.asu.hiblatek;
+
+import org.opencv.core.Rect;
+
+/**
+ * Finds the bounding box of the non-black part of a photo, such as a
+ * fabric sample framed by the black mask of a microscope.
+ * <p>
+ * Each edge is scanned inward a few lines at a time and the scan stops at
+ * the first line holding a non-black pixel, so only the border itself and
+ * one band per edge are read; the side edges are only scanned between the
+ * top and bottom ones. A pixel is black when none of its first three
+ * channels exceeds the threshold; the alpha channel is ignored.
+ *
+ * @author Kirk M. Hilario
+ */
+final class BorderCrop {
+    /**
+     * Highest channel value still considered black.
+     */
+    static final int DEFAULT_THRESHOLD = 1;
+    /**
+     * Number of scanlines read together.
+     */
+    private static final int BAND = 8;
+
+    private BorderCrop() {
+    }
+
+    /**
+     * Finds the bounding box of the non-black pixels.
+     * @param image     The photo.
+     * @param threshold Highest channel value considered black.
+     * @return          The bounding box, or the whole image if it is entirely black.
+     */
+    static Rect find(TileSource image, int threshold) {
+        int width = image.width();
+        int height = image.height();
+        byte[] buffer = new byte[BAND * Math.max(width, height) * image.stride()];
+
+        int top = firstRow(image, 0, height, 1, threshold, buffer);
+        if (top < 0)
+            return new Rect(0, 0, width, height);
+        int bottom = firstRow(image, height - 1, top - 1, -1, threshold, buffer);
+        int rows = bottom - top + 1;
+        int left = firstColumn(image, top, rows, 0, width, 1, threshold, buffer);
+        int right = firstColumn(image, top, rows, width - 1, left - 1, -1, threshold, buffer);
+        return new Rect(left, top, right - left + 1, rows);
+    }
+
+    /**
+     * Returns the first row from {@code from} toward {@code to} (exclusive)
+     * that holds a non-black pixel, or {@code -1}.
+     */
+    private static int firstRow(TileSource image, int from, int to, int step, int threshold, byte[] buffer) {
+        int width = image.width();
+        int stride = image.stride();
+        for (int r = from; r != to; ) {
+            int n = Math.min(BAND, Math.abs(to - r));
+            int y = (step > 0) ? r : r - n + 1;
+            image.read(0, y, width, n, buffer);
+            for (int i = 0; i < n; i++, r += step) {
+                if (hasContent(buffer, (r - y) * width * stride, width, stride, stride, threshold))
+                    return r;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same as {@link #firstRow} over the columns, between rows {@code top}
+     * and {@code top + rows}.
+     */
+    private static int firstColumn(TileSource image, int top, int rows, int from, int to, int step,
+                                   int threshold, byte[] buffer) {
+        int stride = image.stride();
+        for (int c = from; c != to; ) {
+            int n = Math.min(BAND, Math.abs(to - c));
+            int x = (step > 0) ? c : c - n + 1;
+            image.read(x, top, n, rows, buffer);
+            for (int j = 0; j < n; j++, c += step) {
+                if (hasContent(buffer, (c - x) * stride, rows, n * stride, stride, threshold))
+                    return c;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasContent(byte[] pixels, int offset, int length, int step, int stride, int threshold) {
+        int channels = Math.min(stride, 3);
+        for (int p = 0, k = offset; p < length; p++, k += step) {
+            for (int ch = 0; ch < channels; ch++) {
+                if ((pixels[k + ch] & 0xFF) > threshold)
+                    return true;
+            }
+        }
+        return false;
+    }
+}
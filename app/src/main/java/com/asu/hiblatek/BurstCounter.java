@@ -0,0 +1,71 @@
+package com.asu.hiblatek;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Counts the frames of a burst concurrently and fuses their counts.
+ * <p>
+ * Every frame is analysed on its own core as soon as it is submitted, so
+ * the analysis of the first frames overlaps the capture of the last ones
+ * and a burst takes about as long as its slowest frame.
+ *
+ * @author Kirk M. Hilario
+ */
+class BurstCounter {
+    private final ExecutorService workers;
+    private final List<Future<FiberCounter.Count>> frames = new ArrayList<>();
+
+    /**
+     * Creates a counter for one burst.
+     * @param parallelism   Number of frames analysed at the same time.
+     */
+    BurstCounter(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        this.workers = Executors.newFixedThreadPool(parallelism);
+    }
+
+    /**
+     * Starts the analysis of a frame.
+     * @param frame Counts the frame.
+     */
+    synchronized void submit(Callable<FiberCounter.Count> frame) {
+        frames.add(workers.submit(frame));
+    }
+
+    /**
+     * Waits for every submitted frame and fuses their counts. The counter
+     * cannot be used afterwards.
+     * @return the fused counts
+     * @throws InterruptedException if the waiting thread is interrupted
+     * @throws ExecutionException   if the analysis of a frame failed
+     */
+    CountFusion.FusedCount await() throws InterruptedException, ExecutionException {
+        List<Future<FiberCounter.Count>> submitted;
+        synchronized (this) {
+            submitted = new ArrayList<>(frames);
+        }
+        try {
+            List<FiberCounter.Count> counts = new ArrayList<>();
+            for (Future<FiberCounter.Count> frame : submitted)
+                counts.add(frame.get());
+            return CountFusion.fuse(counts);
+        }
+        finally {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Abandons the burst, interrupting the frames still being analysed.
+     */
+    void cancel() {
+        workers.shutdownNow();
+    }
+}
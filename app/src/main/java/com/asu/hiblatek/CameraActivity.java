@@ -3,18 +3,26 @@ package com.asu.hiblatek;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.Manifest;
+import android.graphics.Bitmap;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.util.Size;
 import android.view.MotionEvent;
 import android.widget.ImageButton;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.Camera;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.FocusMeteringAction;
+import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
 import androidx.camera.core.MeteringPoint;
 import androidx.camera.core.MeteringPointFactory;
 import androidx.camera.core.Preview;
@@ -28,18 +36,42 @@ import com.google.android.material.slider.Slider;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class CameraActivity extends AppCompatActivity {
 
     private static final int CAMERA_PERMISSION_REQUEST_CODE = 1001;
+    /**
+     * Resolution of the frames counted live; the counts need far fewer
+     * pixels than the captured photo.
+     */
+    private static final Size LIVE_COUNT_RESOLUTION = new Size(640, 480);
+    /**
+     * Number of frames taken by a burst.
+     */
+    private static final int BURST_FRAMES = 5;
+    /**
+     * Most burst frames decoded at the same time; each holds a full photo.
+     */
+    private static final int BURST_FRAMES_IN_MEMORY = 2;
     private PreviewView previewView;
     private Slider zoomSlider, brightnessSlider;
     private ImageButton flashButton, captureButton;
+    private TextView liveCountView;
     private Camera camera;
     private ImageCapture imageCapture;
+    private ImageAnalysis imageAnalysis;
+    private final ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService burstExecutor = Executors.newSingleThreadExecutor();
+    private BurstCounter burst = null;
+    private long burstStart;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -51,6 +83,7 @@ public class CameraActivity extends AppCompatActivity {
         brightnessSlider = findViewById(R.id.brightnessSlider);
         flashButton = findViewById(R.id.flashButton);
         captureButton = findViewById(R.id.captureButton);
+        liveCountView = findViewById(R.id.liveCount);
 
         // Check for camera permission and request if necessary
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) == PackageManager.PERMISSION_GRANTED) {
@@ -83,8 +116,12 @@ public class CameraActivity extends AppCompatActivity {
         });
 
 
-        // set up the capture button
+        // set up the capture button; a long press takes a burst and fuses its counts
         captureButton.setOnClickListener(v -> captureImage());
+        captureButton.setOnLongClickListener(v -> {
+            captureBurst();
+            return true;
+        });
     }
 
     private void startCamera() {
@@ -110,13 +147,144 @@ public class CameraActivity extends AppCompatActivity {
                 .setFlashMode(ImageCapture.FLASH_MODE_OFF)
                 .build();
 
-        camera = cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageCapture);
+        // Count the threads of the latest preview frame, dropping the ones that arrive meanwhile
+        imageAnalysis = new ImageAnalysis.Builder()
+                .setTargetResolution(LIVE_COUNT_RESOLUTION)
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .build();
+        imageAnalysis.setAnalyzer(analysisExecutor, new LiveCountAnalyzer(this::displayLiveCount));
+
+        camera = cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageCapture, imageAnalysis);
 
         // Set up the zoom and brightness sliders
         setupZoomSlider();
         setupBrightnessSlider();
     }
 
+    /**
+     * Shows the live count with the weft horizontal, as in the main screen's default.
+     */
+    private void displayLiveCount(FiberCounter.Count count, double fps, double latencyMs) {
+        liveCountView.setText(String.format(Locale.getDefault(),
+                "Warp %d · Weft %d\n%.1f fps · %.0f ms", count.vertical, count.horizontal, fps, latencyMs));
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (imageAnalysis != null) imageAnalysis.clearAnalyzer();
+        analysisExecutor.shutdown();
+        if (burst != null) burst.cancel();
+        burstExecutor.shutdownNow();
+    }
+
+    /**
+     * Takes {@link #BURST_FRAMES} frames one after the other. Every frame is
+     * counted as soon as it arrives, while the next one is taken, with at
+     * most {@link #BURST_FRAMES_IN_MEMORY} frames counted at a time.
+     */
+    private void captureBurst() {
+        if (imageCapture == null || burst != null) return;
+        burst = new BurstCounter(Math.min(BURST_FRAMES_IN_MEMORY, Runtime.getRuntime().availableProcessors()));
+        burstStart = System.nanoTime();
+        Toast.makeText(this, "Taking " + BURST_FRAMES + " frames. Hold still.", Toast.LENGTH_SHORT).show();
+        captureBurstFrame(burst, 0);
+    }
+
+    private void captureBurstFrame(BurstCounter burst, int index) {
+        imageCapture.takePicture(burstExecutor, new ImageCapture.OnImageCapturedCallback() {
+            @RequiresApi(api = Build.VERSION_CODES.Q)
+            @Override
+            public void onCaptureSuccess(@NonNull ImageProxy image) {
+                byte[] jpeg = toByteArray(image);
+                int rotation = image.getImageInfo().getRotationDegrees();
+                image.close();
+                burst.submit(() -> countFrame(jpeg, rotation));
+
+                if (index + 1 < BURST_FRAMES)
+                    captureBurstFrame(burst, index + 1);
+                else
+                    finishBurst(burst);
+            }
+
+            @Override
+            public void onError(@NonNull ImageCaptureException exception) {
+                exception.printStackTrace();
+                burst.cancel();
+                runOnUiThread(() -> {
+                    CameraActivity.this.burst = null;
+                    Toast.makeText(CameraActivity.this, "The burst failed.", Toast.LENGTH_SHORT).show();
+                });
+            }
+        });
+    }
+
+    /**
+     * Waits for the frames of the burst on the burst thread and shows the fused count.
+     */
+    private void finishBurst(BurstCounter burst) {
+        try {
+            CountFusion.FusedCount fused = burst.await();
+            long elapsedMs = (System.nanoTime() - burstStart) / 1000000;
+            runOnUiThread(() -> displayBurst(fused, elapsedMs));
+        } catch (CancellationException e) {
+            // the burst failed to capture or the activity went away; nothing to show
+        } catch (ExecutionException | InterruptedException e) {
+            e.printStackTrace();
+            runOnUiThread(() -> Toast.makeText(this, "Failed to count the burst.", Toast.LENGTH_SHORT).show());
+        } finally {
+            runOnUiThread(() -> this.burst = null);
+        }
+    }
+
+    /**
+     * Counts one frame of a burst. The frames are counted side by side, so
+     * each counter uses a single thread. Each frame is decoded at the size
+     * of a single photo, so the fused count matches a single-shot count,
+     * and is freed as soon as it is counted.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    private FiberCounter.Count countFrame(byte[] jpeg, int rotation) throws Exception {
+        Bitmap frame = SampledImageLoader.decode(jpeg, SampledImageLoader.DEFAULT_MAX_PIXELS);
+        FiberCounter counter = null;
+        FiberCounter.Count count;
+        try {
+            counter = new FiberCounter(frame, getApplicationContext());
+            counter.setAnalysisMode(FiberCounter.AnalysisMode.ADAPTIVE);
+            counter.setSamplingTolerance(AdaptiveLineSampler.DEFAULT_TOLERANCE);
+            count = counter.start();
+        } finally {
+            if (counter != null) counter.release();
+            frame.recycle();
+        }
+        if (rotation % 180 != 0)
+            count.rotate();
+        return count;
+    }
+
+    private static byte[] toByteArray(ImageProxy image) {
+        ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+        buffer.rewind();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Shows the fused count of a burst with the weft horizontal.
+     */
+    private void displayBurst(CountFusion.FusedCount fused, long elapsedMs) {
+        // the burst may finish after the activity is gone
+        if (isFinishing() || isDestroyed())
+            return;
+        new AlertDialog.Builder(this)
+                .setTitle("Burst of " + fused.vertical.frames + " frames")
+                .setMessage("Warp: " + fused.vertical + "\nWeft: " + fused.horizontal
+                        + String.format(Locale.getDefault(), "\n\nCounted in %.1f s", elapsedMs / 1000.0))
+                .setPositiveButton("OK", null)
+                .show();
+    }
+
     private void setupZoomSlider() {
         if (camera != null) {
             float maxZoomRatio = camera.getCameraInfo().getZoomState().getValue().getMaxZoomRatio();
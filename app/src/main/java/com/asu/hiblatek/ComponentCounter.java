@@ -0,0 +1,174 @@
+package com.asu.hiblatek;
+
+import java.util.Arrays;
+
+/**
+ * Counts threads as the connected components of an opened mask.
+ * <p>
+ * The components are labelled with a two-pass union-find over the white
+ * runs of the mask rather than its pixels: the first pass joins every run
+ * with the runs it touches on the previous scanlines, the second resolves
+ * every run to its root and gathers the extent of each component. Runs
+ * also join across a few black scanlines, so a short break does not cut a
+ * thread in two. A component counts as a thread when it spans at least a
+ * given fraction of the scanlines, so specks that survived the opening are
+ * ignored. All state lives in {@code int[]} arrays indexed by run, and a
+ * 12MP mask with a few hundred thousand runs is labelled in milliseconds.
+ *
+ * @author Kirk M. Hilario
+ */
+class ComponentCounter {
+    /**
+     * Default fraction of the scanlines a component must span to be a thread.
+     */
+    static final double DEFAULT_MIN_SPAN = 0.3;
+    /**
+     * Number of size classes of the histogram: component areas are binned
+     * by their power of two.
+     */
+    static final int HISTOGRAM_BINS = 32;
+    private final double minSpan;
+    private final int bridge;
+
+    /**
+     * Holds the threads found in a mask.
+     */
+    static class Result {
+        /**
+         * Position across the scanlines of the centre of every thread, in
+         * increasing order.
+         */
+        final int[] threads;
+        /**
+         * Number of components, threads or not.
+         */
+        final int components;
+        /**
+         * Number of components whose area in pixels lies in
+         * {@code [2^k, 2^(k+1))}, for every {@code k}.
+         */
+        final int[] sizeHistogram;
+
+        Result(int[] threads, int components, int[] sizeHistogram) {
+            this.threads = threads;
+            this.components = components;
+            this.sizeHistogram = sizeHistogram;
+        }
+
+        /**
+         * Returns the number of threads.
+         * @return the number of components long enough to be threads
+         */
+        int count() {
+            return threads.length;
+        }
+    }
+
+    /**
+     * Creates a counter.
+     * @param minSpan   Fraction of the scanlines a component must span to
+     *                  count as a thread.
+     * @param bridge    Number of black scanlines a thread may skip and still
+     *                  be one component.
+     */
+    ComponentCounter(double minSpan, int bridge) {
+        if (minSpan <= 0 || minSpan > 1)
+            throw new IllegalArgumentException("minSpan must be in (0, 1]: " + minSpan);
+        if (bridge < 0)
+            throw new IllegalArgumentException("bridge must not be negative: " + bridge);
+        this.minSpan = minSpan;
+        this.bridge = bridge;
+    }
+
+    /**
+     * Counts the threads of a mask. The threads run across the scanlines:
+     * the vertical lines of a mask encoded by rows, the horizontal lines of
+     * one encoded by columns.
+     * @param mask  The opened mask.
+     * @return      The threads and the component statistics.
+     */
+    Result count(RunLengthMask mask) {
+        int lines = mask.lineCount();
+        int runs = mask.firstRun(lines);
+        int[] parent = new int[runs];
+        for (int r = 0; r < runs; r++)
+            parent[r] = r;
+
+        // first pass: join the runs of each line with those they touch above
+        for (int i = 1; i < lines; i++) {
+            for (int back = 1; back <= bridge + 1 && back <= i; back++)
+                joinLines(mask, i - back, i, parent);
+        }
+
+        // second pass: resolve the roots and gather every component
+        int[] firstLine = new int[runs];
+        int[] lastLine = new int[runs];
+        long[] area = new long[runs];
+        long[] moment = new long[runs];
+        Arrays.fill(firstLine, Integer.MAX_VALUE);
+        for (int i = 0; i < lines; i++) {
+            for (int r = mask.firstRun(i), end = mask.firstRun(i + 1); r < end; r++) {
+                int root = find(parent, r);
+                int start = mask.runStart(r);
+                int length = mask.runEnd(r) - start;
+                if (firstLine[root] > i) firstLine[root] = i;
+                lastLine[root] = i;
+                area[root] += length;
+                moment[root] += (long) length * (2L * start + length);
+            }
+        }
+
+        int minLines = (int) Math.ceil(minSpan * lines);
+        int[] threads = new int[runs];
+        int count = 0;
+        int components = 0;
+        int[] histogram = new int[HISTOGRAM_BINS];
+        for (int r = 0; r < runs; r++) {
+            if (parent[r] != r) continue;
+            components++;
+            histogram[Math.min(HISTOGRAM_BINS - 1, 63 - Long.numberOfLeadingZeros(area[r]))]++;
+            if (lastLine[r] - firstLine[r] + 1 >= minLines)
+                threads[count++] = (int) (moment[r] / (2 * area[r]));
+        }
+        threads = Arrays.copyOf(threads, count);
+        Arrays.sort(threads);
+        return new Result(threads, components, histogram);
+    }
+
+    /**
+     * Joins every run of line {@code b} with the runs of line {@code a}
+     * it overlaps or touches diagonally. Both lists are sorted, so one
+     * merge-like sweep finds every pair.
+     */
+    private static void joinLines(RunLengthMask mask, int a, int b, int[] parent) {
+        int i = mask.firstRun(a), iEnd = mask.firstRun(a + 1);
+        int j = mask.firstRun(b), jEnd = mask.firstRun(b + 1);
+        while (i < iEnd && j < jEnd) {
+            if (mask.runStart(i) <= mask.runEnd(j) && mask.runStart(j) <= mask.runEnd(i))
+                union(parent, i, j);
+            // advance the run that ends first
+            if (mask.runEnd(i) < mask.runEnd(j)) i++;
+            else j++;
+        }
+    }
+
+    private static int find(int[] parent, int r) {
+        int root = r;
+        while (parent[root] != root)
+            root = parent[root];
+        while (parent[r] != root) {
+            int next = parent[r];
+            parent[r] = root;
+            r = next;
+        }
+        return root;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        // the smaller index becomes the root, so roots are the first run of their component
+        if (ra < rb) parent[rb] = ra;
+        else if (rb < ra) parent[ra] = rb;
+    }
+}
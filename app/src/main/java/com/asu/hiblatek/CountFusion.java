@@ -0,0 +1,123 @@
+package com.asu.hiblatek;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fuses the counts of several frames of the same fabric into one robust
+ * estimate per direction.
+ * <p>
+ * A blurred or glaring frame usually loses or gains several threads at
+ * once, so the mean of the counts follows it. The median and the trimmed
+ * mean ignore such a frame, and the median absolute deviation tells how
+ * much the frames disagree.
+ *
+ * @author Kirk M. Hilario
+ */
+final class CountFusion {
+    /**
+     * Fraction of the counts dropped from each end by the trimmed mean.
+     */
+    static final double TRIM_FRACTION = 0.2;
+
+    private CountFusion() {
+    }
+
+    /**
+     * The fused counts of one direction.
+     */
+    static class Estimate {
+        final double median;
+        final double trimmedMean;
+        /**
+         * Median absolute deviation from the median.
+         */
+        final double mad;
+        final int min;
+        final int max;
+        final int frames;
+
+        Estimate(double median, double trimmedMean, double mad, int min, int max, int frames) {
+            this.median = median;
+            this.trimmedMean = trimmedMean;
+            this.mad = mad;
+            this.min = min;
+            this.max = max;
+            this.frames = frames;
+        }
+
+        /**
+         * Returns the fused count as a whole number of threads.
+         * @return the rounded median
+         */
+        int count() {
+            return (int) Math.round(median);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d ± %.1f (%d–%d)", count(), mad, min, max);
+        }
+    }
+
+    /**
+     * The fused counts of both directions.
+     */
+    static class FusedCount {
+        final Estimate vertical;
+        final Estimate horizontal;
+
+        FusedCount(Estimate vertical, Estimate horizontal) {
+            this.vertical = vertical;
+            this.horizontal = horizontal;
+        }
+    }
+
+    /**
+     * Fuses the counts of several frames.
+     * @param counts    The count of every frame.
+     * @return          The fused counts.
+     */
+    static FusedCount fuse(List<FiberCounter.Count> counts) {
+        int[] vertical = new int[counts.size()];
+        int[] horizontal = new int[counts.size()];
+        for (int i = 0; i < counts.size(); i++) {
+            vertical[i] = counts.get(i).vertical;
+            horizontal[i] = counts.get(i).horizontal;
+        }
+        return new FusedCount(estimate(vertical), estimate(horizontal));
+    }
+
+    /**
+     * Fuses the counts of one direction.
+     * @param counts    The count of every frame; not modified.
+     * @return          The estimate.
+     */
+    static Estimate estimate(int[] counts) {
+        if (counts.length == 0)
+            throw new IllegalArgumentException("no counts to fuse");
+        int n = counts.length;
+        int[] sorted = counts.clone();
+        Arrays.sort(sorted);
+        double median = median(sorted);
+
+        int trim = (int) (n * TRIM_FRACTION);
+        long sum = 0;
+        for (int i = trim; i < n - trim; i++)
+            sum += sorted[i];
+        double trimmedMean = sum / (double) (n - 2 * trim);
+
+        double[] deviations = new double[n];
+        for (int i = 0; i < n; i++)
+            deviations[i] = Math.abs(sorted[i] - median);
+        Arrays.sort(deviations);
+        double mad = (n % 2 == 1) ? deviations[n / 2] : (deviations[n / 2 - 1] + deviations[n / 2]) / 2;
+
+        return new Estimate(median, trimmedMean, mad, sorted[0], sorted[n - 1], n);
+    }
+
+    private static double median(int[] sorted) {
+        int n = sorted.length;
+        return (n % 2 == 1) ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0;
+    }
+}
@@ -0,0 +1,191 @@
+package com.asu.hiblatek;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The registry of counting engines.
+ * <p>
+ * The cost models are linear in the work each engine does: the opening
+ * of the image for the engines that count its masks, then the run lists
+ * of the masks. Their coefficients are rough per-pixel and per-run times
+ * on a mid-range phone and can be recalibrated with the {@code :benchmark}
+ * module.
+ *
+ * @author Kirk M. Hilario
+ */
+final class CountingStrategies {
+    /**
+     * Fraction of the scanlines sampled by the scanline engine.
+     */
+    private static final double SAMPLED_FRACTION = 0.03;
+    private static final List<CountingStrategy> registered = new ArrayList<>();
+
+    static {
+        register(new Scanline());
+        register(new Projection());
+        register(new Components());
+        register(new Spectrum());
+    }
+
+    private CountingStrategies() {
+    }
+
+    /**
+     * Adds an engine to the registry, replacing any with the same engine.
+     * @param strategy  The engine's description.
+     */
+    static synchronized void register(CountingStrategy strategy) {
+        for (int i = 0; i < registered.size(); i++) {
+            if (registered.get(i).engine() == strategy.engine()) {
+                registered.set(i, strategy);
+                return;
+            }
+        }
+        registered.add(strategy);
+    }
+
+    /**
+     * Returns every registered engine.
+     * @return an unmodifiable copy of the registry
+     */
+    static synchronized List<CountingStrategy> all() {
+        return Collections.unmodifiableList(new ArrayList<>(registered));
+    }
+
+    /**
+     * Returns the description of an engine.
+     * @param engine    The engine.
+     * @return          Its registered description.
+     */
+    static synchronized CountingStrategy forEngine(FiberCounter.Engine engine) {
+        for (CountingStrategy strategy : registered) {
+            if (strategy.engine() == engine)
+                return strategy;
+        }
+        throw new IllegalArgumentException("no strategy registered for " + engine);
+    }
+
+    /**
+     * Estimates the time taken to threshold and open the image in both
+     * directions, shared by every engine that counts the masks.
+     */
+    static double openingMillis(ImageStatistics stats) {
+        return 10e-6 * stats.pixels();
+    }
+
+    /**
+     * Estimates the number of white runs in both opened masks: every line
+     * crosses about one run per thread.
+     */
+    static double runs(ImageStatistics stats) {
+        if (stats.pitch <= 0)
+            return stats.pixels() / 8.0;
+        return 2 * stats.pixels() / stats.pitch;
+    }
+
+    /**
+     * Maximum white runs on a few sampled lines.
+     */
+    private static class Scanline implements CountingStrategy {
+        @Override
+        public FiberCounter.Engine engine() {
+            return FiberCounter.Engine.SCANLINE;
+        }
+
+        @Override
+        public double estimateMillis(ImageStatistics stats) {
+            return openingMillis(stats) + 0.1 + 20e-6 * runs(stats) * SAMPLED_FRACTION;
+        }
+
+        @Override
+        public int robustness() {
+            return 1;
+        }
+
+        @Override
+        public boolean accepts(ImageStatistics stats) {
+            return true;
+        }
+    }
+
+    /**
+     * Peaks of the smoothed projection profiles.
+     */
+    private static class Projection implements CountingStrategy {
+        @Override
+        public FiberCounter.Engine engine() {
+            return FiberCounter.Engine.PROJECTION;
+        }
+
+        @Override
+        public double estimateMillis(ImageStatistics stats) {
+            return openingMillis(stats) + 0.3 + 10e-6 * runs(stats) + 2e-6 * (stats.width + stats.height);
+        }
+
+        @Override
+        public int robustness() {
+            return 2;
+        }
+
+        @Override
+        public boolean accepts(ImageStatistics stats) {
+            // the smoothing window would merge threads closer than this
+            return stats.pitch <= 0 || stats.pitch >= 6;
+        }
+    }
+
+    /**
+     * Long connected components of the masks.
+     */
+    private static class Components implements CountingStrategy {
+        @Override
+        public FiberCounter.Engine engine() {
+            return FiberCounter.Engine.COMPONENTS;
+        }
+
+        @Override
+        public double estimateMillis(ImageStatistics stats) {
+            // every run is compared with the runs of the lines it may bridge to
+            return openingMillis(stats) + 1 + 60e-6 * runs(stats) + 2e-6 * stats.pixels() / 1000;
+        }
+
+        @Override
+        public int robustness() {
+            return 3;
+        }
+
+        @Override
+        public boolean accepts(ImageStatistics stats) {
+            return true;
+        }
+    }
+
+    /**
+     * Dominant frequency of the intensity profiles.
+     */
+    private static class Spectrum implements CountingStrategy {
+        @Override
+        public FiberCounter.Engine engine() {
+            return FiberCounter.Engine.SPECTRUM;
+        }
+
+        @Override
+        public double estimateMillis(ImageStatistics stats) {
+            // one pass of Core.reduce per direction, then two short transforms
+            return 0.5 + 1e-6 * stats.pixels();
+        }
+
+        @Override
+        public int robustness() {
+            // ignores exposure, but a skewed or irregular weave smears the peak
+            return 1;
+        }
+
+        @Override
+        public boolean accepts(ImageStatistics stats) {
+            return stats.pitch <= 0 || stats.pitch >= SpectralCounter.MIN_PITCH + 1;
+        }
+    }
+}
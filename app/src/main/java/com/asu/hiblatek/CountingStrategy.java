@@ -0,0 +1,38 @@
+package com.asu.hiblatek;
+
+/**
+ * A counting engine, described by what it costs and when it can be trusted,
+ * so that {@link EngineSelector} can choose one per image.
+ *
+ * @author Kirk M. Hilario
+ */
+interface CountingStrategy {
+    /**
+     * Returns the engine that does the counting.
+     * @return the engine
+     */
+    FiberCounter.Engine engine();
+
+    /**
+     * Estimates the time taken to count both directions of an image,
+     * including the opening when the engine needs one.
+     * @param stats Statistics of the analysed image.
+     * @return      The estimated time in milliseconds.
+     */
+    double estimateMillis(ImageStatistics stats);
+
+    /**
+     * Ranks how well the engine copes with noise, breaks and specks;
+     * higher is better.
+     * @return the robustness, from {@code 1}
+     */
+    int robustness();
+
+    /**
+     * Checks if the engine can count the image at all, e.g. if its threads
+     * are wide enough.
+     * @param stats Statistics of the analysed image.
+     * @return      {@code true} if the engine may be used
+     */
+    boolean accepts(ImageStatistics stats);
+}
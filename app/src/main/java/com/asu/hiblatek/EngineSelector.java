@@ -0,0 +1,84 @@
+package com.asu.hiblatek;
+
+/**
+ * Chooses the counting engine for an image: the cheapest registered engine
+ * that is robust enough for the image and the profile, and fits the
+ * latency budget.
+ * <p>
+ * A low-contrast image asks for one more level of robustness, since its
+ * thresholded threads break and its background leaves specks. When no
+ * engine that is robust enough fits the budget, the most robust one that
+ * fits is used; when none fits at all, the cheapest. The budget covers
+ * the whole analysis of the resized image, the threshold and opening of
+ * the mask-based engines included.
+ *
+ * @author Kirk M. Hilario
+ */
+class EngineSelector {
+    /**
+     * Contrast under which an image is considered hard to threshold.
+     */
+    static final int LOW_CONTRAST = 80;
+
+    /**
+     * How much robustness is traded for speed.
+     */
+    enum Profile {
+        FAST(1),
+        BALANCED(2),
+        PRECISE(3);
+
+        /**
+         * Robustness asked of the engine for a well-contrasted image.
+         */
+        final int robustness;
+
+        Profile(int robustness) {
+            this.robustness = robustness;
+        }
+    }
+
+    private final Profile profile;
+    private final double budgetMillis;
+
+    /**
+     * Creates a selector.
+     * @param profile       The profile.
+     * @param budgetMillis  Time the thresholding, opening and counting may
+     *                      take together.
+     */
+    EngineSelector(Profile profile, double budgetMillis) {
+        if (budgetMillis <= 0)
+            throw new IllegalArgumentException("budgetMillis must be positive: " + budgetMillis);
+        this.profile = profile;
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * Chooses the engine for an image.
+     * @param stats Statistics of the analysed image.
+     * @return      The description of the chosen engine.
+     */
+    CountingStrategy select(ImageStatistics stats) {
+        int wanted = profile.robustness + (stats.contrast < LOW_CONTRAST ? 1 : 0);
+        CountingStrategy cheapestGood = null;
+        CountingStrategy mostRobust = null;
+        CountingStrategy cheapest = null;
+        for (CountingStrategy strategy : CountingStrategies.all()) {
+            if (!strategy.accepts(stats)) continue;
+            double cost = strategy.estimateMillis(stats);
+            if (cheapest == null || cost < cheapest.estimateMillis(stats))
+                cheapest = strategy;
+            if (cost > budgetMillis) continue;
+            if (strategy.robustness() >= wanted
+                    && (cheapestGood == null || cost < cheapestGood.estimateMillis(stats)))
+                cheapestGood = strategy;
+            if (mostRobust == null || strategy.robustness() > mostRobust.robustness())
+                mostRobust = strategy;
+        }
+        if (cheapestGood != null) return cheapestGood;
+        if (mostRobust != null) return mostRobust;
+        if (cheapest != null) return cheapest;
+        return CountingStrategies.forEngine(FiberCounter.Engine.SCANLINE);
+    }
+}
@@ -10,15 +10,16 @@ import androidx.annotation.RequiresApi;
 import org.opencv.android.Utils;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
-import org.opencv.core.MatOfPoint;
 import org.opencv.core.Point;
 import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 
 /**
@@ -32,6 +33,54 @@ public class FiberCounter {
      */
     private final String TAG = "hiblatek.FiberCounter";
     enum Direction { HORIZONTAL, VERTICAL }
+    /**
+     * Resolution at which the image is analysed.
+     * {@code ADAPTIVE} downsamples the image to a target number of pixels
+     * per thread and scales the kernels, margins and annotations to match.
+     */
+    enum AnalysisMode { FULL_RESOLUTION, ADAPTIVE }
+    /**
+     * Algorithm used to count the threads of an opened mask.
+     * {@code SCANLINE} takes the most white runs found on the sampled lines;
+     * {@code PROJECTION} counts the peaks of the mask's projection profile;
+     * {@code COMPONENTS} counts the connected threads of the mask;
+     * {@code SPECTRUM} skips the mask and divides the image's width by the
+     * dominant period of its intensity profile.
+     */
+    enum Engine { SCANLINE, PROJECTION, COMPONENTS, SPECTRUM }
+    /**
+     * The result images that can be rendered after counting, in the
+     * order they are shown to the user.
+     */
+    enum ResultView { ORIGINAL, VERTICAL_MASK, VERTICAL_ANNOTATED, HORIZONTAL_MASK, HORIZONTAL_ANNOTATED }
+    /**
+     * The stages of an analysis, in the order they are reported.
+     */
+    enum Stage {
+        DECODING("Reading the photo"),
+        CROPPING("Cropping the photo"),
+        CHOOSING_RESOLUTION("Measuring the threads"),
+        ISOLATING_VERTICAL("Counting the vertical threads"),
+        ISOLATING_HORIZONTAL("Counting the horizontal threads"),
+        DONE("Done");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Receives the stages of an analysis as they begin.
+     */
+    interface ProgressListener {
+        /**
+         * Called on the analysing thread when a stage begins.
+         * @param stage The stage that begins.
+         */
+        void onStage(Stage stage);
+    }
     /**
      * Margin (in pixels) used in image analysis
      */
@@ -46,17 +95,104 @@ public class FiberCounter {
     private int ANNOTATION_THICKNESS = 3;
     private int ANNOTATION_LENGTH = 10;
     /**
-     * The filename of the photo to be processed.
+     * Length (in pixels) of the structuring elements used to isolate lines.
+     */
+    private int KERNEL_LENGTH = 20;
+    /**
+     * Threshold separating the fibers from the background.
+     */
+    private int THRESHOLD = 128;
+    /**
+     * Number of scanlines used to estimate the thread pitch.
+     */
+    private int PITCH_SAMPLES = 5;
+    /**
+     * Number of columns opened together by the fused vertical opening.
+     */
+    private int STRIP_WIDTH = 64;
+    /**
+     * Whether thresholding and opening are done in one pass by {@link LineOpening}
+     * instead of {@code Imgproc.threshold}, {@code erode} and {@code dilate}.
+     */
+    private boolean fusedOpening = true;
+    /**
+     * Side of the tiles opened by {@link TiledOpening}; {@code 0} tiles
+     * only images larger than {@link #AUTO_TILE_PIXELS}.
+     */
+    private int tileSize = 0;
+    /**
+     * Analysed images above this many pixels are opened in tiles of
+     * {@link #AUTO_TILE_SIZE} unless a tile size is set, so that a large
+     * photo makes no full-size intermediate image.
+     */
+    static final int AUTO_TILE_PIXELS = 4_000_000;
+    static final int AUTO_TILE_SIZE = 512;
+    /**
+     * Tile side used by the running analysis; {@code 0} opens the whole image.
+     */
+    private int activeTileSize = 0;
+    /**
+     * Width (in pixels) of the box filter applied to projection profiles.
+     */
+    private int PROFILE_WINDOW = 5;
+    private Engine engine = Engine.SCANLINE;
+    /**
+     * Chooses the engine for every image; {@code null} keeps {@link #engine}.
+     */
+    private EngineSelector engineSelector = null;
+    private AnalysisMode analysisMode = AnalysisMode.FULL_RESOLUTION;
+    private int targetPixelsPerThread = ResolutionPolicy.DEFAULT_PIXELS_PER_THREAD;
+    /**
+     * Resolution chosen for the current analysis.
+     */
+    private ResolutionPolicy policy = ResolutionPolicy.fullResolution();
+    /**
+     * Number of threads used to count the sampled lines.
+     */
+    private int parallelism = 1;
+    /**
+     * Largest relative spread of the scanline counts at which
+     * {@link AdaptiveLineSampler} stops early; {@code 0} counts every
+     * sampled line.
+     */
+    private double samplingTolerance = 0;
+    private ProgressListener progressListener = null;
+    /**
+     * The filename of the photo to be processed; made on demand for a
+     * counter over a luminance image.
      */
-    private final Bitmap bitmap;
+    private Bitmap bitmap;
     private Mat originalImage;
+    /**
+     * Whether {@link #originalImage} was decoded here, rather than lent by
+     * the caller, and is freed by {@link #release()}.
+     */
+    private boolean ownsOriginalImage = true;
+    private boolean released = false;
     private Mat monotoneImage;
-    private Mat horizontallyAnnotated;
-    private Mat verticallyAnnotated;
+    /**
+     * Annotated views of the original image, copied only when requested.
+     */
+    private AnnotationCanvas horizontallyAnnotated;
+    private AnnotationCanvas verticallyAnnotated;
+    /**
+     * The isolated vertical and horizontal lines.
+     */
+    private RunLengthMask verticalMask;
+    private RunLengthMask horizontalMask;
     /**
      * The resulting count.
      */
     private Count count;
+    /**
+     * Owns the temporary Mats of the running analysis; {@code null} outside
+     * of {@link #start()}.
+     */
+    private MatScope scope;
+    /**
+     * Times the stages of the analysis.
+     */
+    private AnalysisMetrics metrics = AnalysisMetrics.DISABLED;
 
     /**
      * This inner class will be used to collect all results
@@ -64,6 +200,10 @@ public class FiberCounter {
      * of fbers horizontally and vertically.
      */
     static class Count {
+        /**
+         * Confidence below which a count is flagged as unreliable.
+         */
+        static final double LOW_CONFIDENCE = 0.8;
         /**
          * The number of horizontal fibers.
          */
@@ -72,6 +212,12 @@ public class FiberCounter {
          * The number of vertical fibers.
          */
         int vertical = 0;
+        /**
+         * Agreement of the sampled scanlines of each direction, or
+         * {@code null} when the engine does not sample scanlines.
+         */
+        LineCountStatistics horizontalStatistics = null;
+        LineCountStatistics verticalStatistics = null;
 
         /**
          * Returns the total number of fibers.
@@ -81,6 +227,41 @@ public class FiberCounter {
             return horizontal + vertical;
         }
 
+        /**
+         * Returns how well the sampled scanlines support the counts; the
+         * weaker direction decides. Counts below
+         * {@link #LOW_CONFIDENCE} are worth measuring again.
+         * @return the confidence between {@code 0} and {@code 1}, or
+         *         {@code NaN} when the engine does not sample scanlines
+         */
+        public double getConfidence() {
+            if (horizontalStatistics == null || verticalStatistics == null)
+                return Double.NaN;
+            return Math.min(horizontalStatistics.confidence(horizontal),
+                    verticalStatistics.confidence(vertical));
+        }
+
+        /**
+         * Swaps the directions, for a frame counted a quarter turn away
+         * from the orientation it is shown in.
+         */
+        void rotate() {
+            int vertical = this.vertical;
+            this.vertical = this.horizontal;
+            this.horizontal = vertical;
+            LineCountStatistics statistics = this.verticalStatistics;
+            this.verticalStatistics = this.horizontalStatistics;
+            this.horizontalStatistics = statistics;
+        }
+
+        /**
+         * Checks if the counts are known to be unreliable.
+         * @return {@code true} if the confidence is below {@link #LOW_CONFIDENCE}
+         */
+        public boolean isUnreliable() {
+            return getConfidence() < LOW_CONFIDENCE;
+        }
+
         @Override
         public String toString() {
             return Integer.toString(getTotal());
@@ -92,41 +273,238 @@ public class FiberCounter {
      * @param bitmap  The filename of the photo to be processed.
      */
     public FiberCounter(Bitmap bitmap, Context context) {
+        this(bitmap, context, AnalysisMetrics.DISABLED);
+    }
+
+    /**
+     * Creates a new instance of the {@code MyFiberCounter} class that
+     * records its timings, including the crop done here.
+     * @param bitmap    The filename of the photo to be processed.
+     * @param metrics   Receives the timings and counters.
+     */
+    FiberCounter(Bitmap bitmap, Context context, AnalysisMetrics metrics) {
 //        this.context = context;
         this.count = new Count();
-        this.bitmap = cropOuterBorder(bitmap);
-        this.originalImage = new Mat (bitmap.getWidth(), bitmap.getHeight(), CvType.CV_8UC1);
-        this.horizontallyAnnotated = new Mat (bitmap.getWidth(), bitmap.getHeight(), CvType.CV_8UC1);
-        this.verticallyAnnotated = new Mat (bitmap.getWidth(), bitmap.getHeight(), CvType.CV_8UC1);
-        Utils.bitmapToMat(this.bitmap, this.originalImage);
-        Utils.bitmapToMat(this.bitmap, this.horizontallyAnnotated);
-        Utils.bitmapToMat(this.bitmap, this.verticallyAnnotated);
+        this.metrics = metrics;
+        Mat imageMat = new Mat();
+        long t = metrics.begin(AnalysisMetrics.Timer.BITMAP_TO_MAT);
+        Utils.bitmapToMat(bitmap, imageMat);
+        metrics.end(AnalysisMetrics.Timer.BITMAP_TO_MAT, t);
+        t = metrics.begin(AnalysisMetrics.Timer.CROP);
+        this.originalImage = cropOuterBorder(imageMat);
+        metrics.end(AnalysisMetrics.Timer.CROP, t);
+        this.bitmap = (this.originalImage == imageMat) ? bitmap : null;
+        createCanvases();
     }
 
     /**
-     * Initiates the counting procedure.
+     * Creates a counter over a single-channel luminance image, such as
+     * {@code CvCameraViewFrame.gray()}. The image is used in place, with no
+     * copy and no colour conversion, so it must stay valid for as long as
+     * the counter is used. Camera frames have no black border, so nothing
+     * is cropped.
+     * @param luminance The 8-bit single-channel image.
+     */
+    public FiberCounter(Mat luminance) {
+        if (luminance.type() != CvType.CV_8UC1)
+            throw new IllegalArgumentException("expected an 8-bit single-channel image: "
+                    + CvType.typeToString(luminance.type()));
+        this.count = new Count();
+        this.bitmap = null;
+        this.originalImage = luminance;
+        this.ownsOriginalImage = false;
+        createCanvases();
+    }
+
+    /**
+     * Creates a counter over a luminance plane, such as the Y plane of a
+     * YUV {@code ImageProxy}, wrapping the buffer without copying it.
+     * The plane must stay valid for as long as the counter is used.
+     * @param plane     Direct buffer holding the plane.
+     * @param width     Width of the plane in pixels.
+     * @param height    Height of the plane in pixels.
+     * @param rowStride Distance in bytes between the first pixels of two rows.
+     * @return          The counter over the plane.
+     */
+    public static FiberCounter fromLuminance(ByteBuffer plane, int width, int height, int rowStride) {
+        if (!plane.isDirect())
+            throw new IllegalArgumentException("the plane must be held by a direct buffer");
+        // OpenCV wraps the whole buffer, so a short one would be read past its end
+        PreviewCounter.checkPlane(plane.capacity(), width, height, rowStride);
+        return new FiberCounter(new Mat(height, width, CvType.CV_8UC1, plane, rowStride));
+    }
+
+    private void createCanvases() {
+        this.horizontallyAnnotated = new AnnotationCanvas(originalImage, new Scalar(218, 20, 255), ANNOTATION_THICKNESS);
+        this.verticallyAnnotated = new AnnotationCanvas(originalImage, new Scalar(57, 255, 20), ANNOTATION_THICKNESS);
+    }
+
+    /**
+     * Initiates the counting procedure. The result images are not made
+     * here; see {@link #render(ResultView)}.
+     * <p>
+     * The analysis stops with a {@link CancellationException} soon after
+     * the calling thread is interrupted.
+     * @return the resulting count
      */
     @RequiresApi(api = Build.VERSION_CODES.Q)
-    public List<Bitmap> start() {
-        List<Bitmap> results = new ArrayList<>();
-        results.add(matToBitmap(this.originalImage));
+    public Count start() {
+        try (MatScope scope = new MatScope(BuildConfig.DEBUG)) {
+            this.scope = scope;
+            reportStage(Stage.CHOOSING_RESOLUTION);
+            ImageStatistics stats = (analysisMode == AnalysisMode.ADAPTIVE || engineSelector != null)
+                    ? measureImage() : null;
+            this.policy = choosePolicy(stats);
+            if (engineSelector != null) {
+                this.engine = engineSelector.select(stats.scaled(policy.getScale())).engine();
+                Log.v(TAG, "Counting with " + engine + " for " + stats);
+            }
+            Mat analysisImage = this.originalImage;
+            if (policy.isDownsampled()) {
+                analysisImage = scope.newMat();
+                long t = metrics.begin(AnalysisMetrics.Timer.RESIZE);
+                Imgproc.resize(this.originalImage, analysisImage, new Size(),
+                        policy.getScale(), policy.getScale(), Imgproc.INTER_AREA);
+                metrics.end(AnalysisMetrics.Timer.RESIZE, t);
+                Log.v(TAG, "Analysing at scale " + policy.getScale());
+            }
 
-        // convert bitmap image to Mat
-        Mat tmp = new Mat (bitmap.getWidth(), bitmap.getHeight(), CvType.CV_8UC1);
-        Utils.bitmapToMat(bitmap, tmp);
+            if (engine == Engine.SPECTRUM) {
+                // the spectrum is taken from the grey levels; nothing is thresholded or opened
+                reportStage(Stage.ISOLATING_VERTICAL);
+                this.count.vertical = countSpectrum(analysisImage, Direction.VERTICAL);
+                reportStage(Stage.ISOLATING_HORIZONTAL);
+                this.count.horizontal = countSpectrum(analysisImage, Direction.HORIZONTAL);
+                if (analysisImage != this.originalImage)
+                    scope.release(analysisImage);
+                reportStage(Stage.DONE);
+                return this.count;
+            }
 
-        // convert to black and white
-        Imgproc.threshold(tmp, tmp, 128, 255, Imgproc.THRESH_BINARY);
+            this.activeTileSize = chooseTileSize(analysisImage);
+            if (activeTileSize > 0)
+                Log.v(TAG, "Opening in tiles of " + activeTileSize + " px");
 
-        Mat vMat = isolateVerticalLines(tmp);
-        results.add(matToBitmap(vMat));
-        results.add(matToBitmap(this.verticallyAnnotated));
+            // convert to black and white; the fused and tiled openings threshold as they read
+            Mat tmp = analysisImage;
+            if (!fusedOpening && activeTileSize == 0) {
+                tmp = scope.newMat();
+                long t = metrics.begin(AnalysisMetrics.Timer.THRESHOLD);
+                Imgproc.threshold(analysisImage, tmp, THRESHOLD, 255, Imgproc.THRESH_BINARY);
+                metrics.end(AnalysisMetrics.Timer.THRESHOLD, t);
+                if (analysisImage != this.originalImage)
+                    scope.release(analysisImage);
+            }
 
-        Mat hMat = isolateHorizontalLines(tmp);
-        results.add(matToBitmap(hMat));
-        results.add(matToBitmap(this.horizontallyAnnotated));
+            reportStage(Stage.ISOLATING_VERTICAL);
+            this.verticalMask = isolateVerticalLines(tmp);
+            reportStage(Stage.ISOLATING_HORIZONTAL);
+            this.horizontalMask = isolateHorizontalLines(tmp);
+            if (tmp != this.originalImage)
+                scope.release(tmp);
+            reportStage(Stage.DONE);
+        }
+        finally {
+            // the scope is closed by now, so leaks are counted and the last stage recorded
+            Log.v(TAG, "Peak native memory: " + this.scope);
+            this.scope = null;
+        }
 
-        return results;
+        return this.count;
+    }
+
+    /**
+     * Frees the native memory held by the counter: the decoded image and
+     * the annotated views. The counter can neither count nor render
+     * afterwards. A luminance image lent to the counter is left to its owner.
+     * Releasing twice does nothing.
+     */
+    public synchronized void release() {
+        if (released) return;
+        released = true;
+        horizontallyAnnotated.release();
+        verticallyAnnotated.release();
+        if (ownsOriginalImage)
+            originalImage.release();
+        this.verticalMask = null;
+        this.horizontalMask = null;
+    }
+
+    /**
+     * Tells the listener that a stage begins, unless the analysis was cancelled.
+     * @param stage The stage that begins.
+     */
+    private void reportStage(Stage stage) {
+        checkCancelled();
+        if (scope != null)
+            scope.enter(stage.name());
+        if (progressListener != null)
+            progressListener.onStage(stage);
+    }
+
+    /**
+     * Stops the analysis if the calling thread was interrupted. The
+     * intermediate images are freed by the analysis scope.
+     */
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted())
+            throw new CancellationException("analysis cancelled");
+    }
+
+    /**
+     * Chooses the analysis resolution for the current mode.
+     * @return the resolution policy
+     */
+    private ResolutionPolicy choosePolicy(ImageStatistics stats) {
+        if (analysisMode == AnalysisMode.FULL_RESOLUTION)
+            return ResolutionPolicy.fullResolution();
+        return ResolutionPolicy.forPitch(stats.pitch, targetPixelsPerThread, KERNEL_LENGTH);
+    }
+
+    /**
+     * Measures the size, contrast and thread pitch of the original image
+     * from a few rows and columns, thresholded on the fly.
+     * @return the statistics of the original image
+     */
+    private ImageStatistics measureImage() {
+        return ImageStatistics.measure(MatLineSource.rows(this.originalImage),
+                MatLineSource.columns(this.originalImage), PITCH_SAMPLES, THRESHOLD);
+    }
+
+    /**
+     * Renders one of the result images. Every call makes a new bitmap,
+     * so callers are expected to cache the ones they keep.
+     * @param view  The result image to render.
+     * @return      The rendered bitmap.
+     * @throws IllegalStateException if the counter was released
+     */
+    public synchronized Bitmap render(ResultView view) {
+        if (released)
+            throw new IllegalStateException("counter was released");
+        switch (view) {
+            case VERTICAL_MASK:
+                if (this.verticalMask == null)
+                    return render(ResultView.ORIGINAL);
+                return maskToBitmap(maskToMat(this.verticalMask));
+            case VERTICAL_ANNOTATED:
+                return renderAnnotated(this.verticallyAnnotated);
+            case HORIZONTAL_MASK:
+                if (this.horizontalMask == null)
+                    return render(ResultView.ORIGINAL);
+                return maskToBitmap(maskToMat(this.horizontalMask));
+            case HORIZONTAL_ANNOTATED:
+                return renderAnnotated(this.horizontallyAnnotated);
+            default:
+                if (this.bitmap == null)
+                    this.bitmap = maskToBitmap(this.originalImage.clone());
+                return this.bitmap;
+        }
+    }
+
+    private Bitmap renderAnnotated(AnnotationCanvas canvas) {
+        Bitmap bmp = matToBitmap(canvas.getImage());
+        canvas.release();
+        return bmp;
     }
 
     /**
@@ -135,13 +513,163 @@ public class FiberCounter {
      * @return      The Bitmap image.
      */
     private Bitmap matToBitmap(Mat mat) {
+        long t = metrics.begin(AnalysisMetrics.Timer.MAT_TO_BITMAP);
         if (mat.channels() == 1)
             Imgproc.cvtColor(mat, mat, Imgproc.COLOR_GRAY2BGR);
         Bitmap bmp = Bitmap.createBitmap(mat.cols(), mat.rows(), Bitmap.Config.ARGB_8888);
         Utils.matToBitmap(mat, bmp);
+        metrics.end(AnalysisMetrics.Timer.MAT_TO_BITMAP, t);
+        return bmp;
+    }
+
+    /**
+     * Converts a rendered mask, or any single-channel image, into a Bitmap
+     * and releases the image.
+     * @param mask  Single-channel mask image.
+     * @return      The Bitmap image.
+     */
+    private Bitmap maskToBitmap(Mat mask) {
+        Bitmap bmp = matToBitmap(mask);
+        mask.release();
         return bmp;
     }
 
+    /**
+     * Sets the number of threads used to count the sampled rows and columns.
+     * The counts do not depend on this value.
+     * @param parallelism   Number of threads; {@code 1} counts sequentially.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Makes the scanline engine visit the sampled lines in bit-reversed
+     * order and stop once their counts agree, instead of counting every
+     * {@code LOOP_EVERY_PERCENT}% of the lines. Lines that disagree are
+     * sampled up to twice as densely.
+     * @param tolerance Largest spread of the counts, as a fraction of their
+     *                  mean, for the sampling to stop early;
+     *                  {@link AdaptiveLineSampler#DEFAULT_TOLERANCE} suits
+     *                  most captures. {@code 0} counts every sampled line.
+     */
+    public void setSamplingTolerance(double tolerance) {
+        if (!(tolerance >= 0))
+            throw new IllegalArgumentException("tolerance must not be negative: " + tolerance);
+        this.samplingTolerance = tolerance;
+    }
+
+    /**
+     * Sets the metrics that record the timings of the next calls to
+     * {@link #start()} and {@link #render(ResultView)}.
+     * @param metrics   The metrics; {@link AnalysisMetrics#DISABLED} for none.
+     */
+    void setMetrics(AnalysisMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the metrics of this counter.
+     * @return the metrics
+     */
+    AnalysisMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the listener told about the stages of {@link #start()}.
+     * @param progressListener  The listener; {@code null} for none.
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Renders a run-length encoded mask as a single-channel Mat.
+     * @param mask  The mask to render.
+     * @return      The black and white image.
+     */
+    private Mat maskToMat(RunLengthMask mask) {
+        int rows = mask.isColumns() ? mask.lineLength() : mask.lineCount();
+        int cols = mask.isColumns() ? mask.lineCount() : mask.lineLength();
+        Mat mat = new Mat(rows, cols, CvType.CV_8UC1);
+        mat.put(0, 0, mask.toImage());
+        return mat;
+    }
+
+    /**
+     * Sets the resolution at which the next call to {@link #start()} analyses the image.
+     * @param analysisMode  The analysis mode.
+     */
+    public void setAnalysisMode(AnalysisMode analysisMode) {
+        this.analysisMode = analysisMode;
+    }
+
+    /**
+     * Selects between the fused single-pass opening and the OpenCV
+     * threshold, erode and dilate sequence. Both give the same counts.
+     * @param fusedOpening  {@code true} to use the fused opening.
+     */
+    public void setFusedOpening(boolean fusedOpening) {
+        this.fusedOpening = fusedOpening;
+    }
+
+    /**
+     * Makes the next call to {@link #start()} threshold and open the image
+     * one tile at a time, so that no full-size intermediate image is made.
+     * The counts do not depend on this value. Tiling always uses the fused
+     * opening.
+     * @param tileSize  Side of the tiles in pixels; {@code 0} to tile only
+     *                  images above {@link #AUTO_TILE_PIXELS}, with the fused
+     *                  opening, and open smaller ones whole.
+     */
+    public void setTileSize(int tileSize) {
+        if (tileSize < 0)
+            throw new IllegalArgumentException("tileSize must not be negative: " + tileSize);
+        this.tileSize = tileSize;
+    }
+
+    /**
+     * Sets the algorithm used to count the threads.
+     * @param engine    The counting engine.
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Makes the next calls to {@link #start()} choose the counting engine
+     * for every image, replacing the one set with {@link #setEngine(Engine)}.
+     * @param profile       How much robustness to trade for speed; {@code null}
+     *                      to keep the engine that was set.
+     * @param budgetMillis  Time the thresholding, opening and counting may
+     *                      take together; below the cost of the opening
+     *                      only {@link Engine#SPECTRUM} fits.
+     */
+    public void setEngineProfile(EngineSelector.Profile profile, double budgetMillis) {
+        this.engineSelector = (profile == null) ? null : new EngineSelector(profile, budgetMillis);
+    }
+
+    /**
+     * Returns the engine that counts, or counted, the threads.
+     * @return the counting engine
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Sets the number of pixels per thread pitch targeted by the adaptive mode.
+     * @param targetPixelsPerThread Pixels per thread pitch.
+     */
+    public void setTargetPixelsPerThread(int targetPixelsPerThread) {
+        if (targetPixelsPerThread < 2)
+            throw new IllegalArgumentException("at least 2 pixels per thread are needed: " + targetPixelsPerThread);
+        this.targetPixelsPerThread = targetPixelsPerThread;
+    }
+
     /**
      * Returns the resulting count.
      * @return the resulting count
@@ -152,162 +680,180 @@ public class FiberCounter {
 
     /**
      * Crops the image to remove the surrounding black part.
-     * @param src   Source Bitmap image.
-     * @return      Cropped Bitmap image.
+     * @param src   Source image.
+     * @return      A submat of the source sharing its pixels, or the source
+     *              itself when there is nothing to crop.
      */
-    private Bitmap cropOuterBorder(Bitmap src) {
-        // Load the image as a Mat object
-        Mat imageMat = new Mat();
-        Utils.bitmapToMat(src, imageMat);
-
-        // Convert the image to grayscale if it's in color
-        Mat grayMat = new Mat();
-        if (imageMat.channels() > 1) {
-            Imgproc.cvtColor(imageMat, grayMat, Imgproc.COLOR_BGR2GRAY);
-        } else {
-            grayMat = imageMat;
-        }
-
-        // Threshold the image to separate the black part
-        Mat thresholdMat = new Mat();
-        double thresholdValue = 1; // Adjust the threshold value if needed
-        double maxBinaryValue = 255; // Maximum value for binary threshold
-        Imgproc.threshold(grayMat, thresholdMat, thresholdValue, maxBinaryValue, Imgproc.THRESH_BINARY);
-
-        // verify if there is a need for cropping by checking the first row`
-        boolean isPureBlackOrWhite = true;
-        for (int j = 1; j < thresholdMat.cols(); j++) {
-            if (thresholdMat.get(0, j)[0] != thresholdMat.get(0, j)[0]) {
-                isPureBlackOrWhite = false;
-                break;
-            }
-        }
-        if (!isPureBlackOrWhite) return src; // no need to crop
+    private Mat cropOuterBorder(Mat src) {
+        Rect boundingRect = BorderCrop.find(new MatTileSource(src), BorderCrop.DEFAULT_THRESHOLD);
+        if (boundingRect.width == src.cols() && boundingRect.height == src.rows())
+            return src; // no need to crop
 
-        // Find the contours of the black part
-        List<MatOfPoint> contours = new ArrayList<>();
-        Mat hierarchy = new Mat();
-        Imgproc.findContours(thresholdMat, contours, hierarchy, Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
-
-        // Find the bounding rectangle of the black part
-        Rect boundingRect = Imgproc.boundingRect(contours.get(0));
-
-        // Crop the image using the bounding rectangle
-        Mat croppedMat = new Mat(imageMat, boundingRect);
+        Log.v(TAG, "Cropped the outer border to " + boundingRect);
+        Mat croppedMat = src.submat(boundingRect);
+        src.release();
+        return croppedMat;
+    }
 
-        // Convert the cropped Mat back to a bitmap
-        Bitmap croppedBitmap = Bitmap.createBitmap(croppedMat.cols(), croppedMat.rows(), Bitmap.Config.ARGB_8888);
-        Utils.matToBitmap(croppedMat, croppedBitmap);
+    /**
+     * Maps a point of the analysed image onto the original image.
+     */
+    private Point toCaptured(double x, double y) {
+        return new Point(policy.toCaptured(x), policy.toCaptured(y));
+    }
 
-        return croppedBitmap;
+    private void annotateImages(Direction direction, List<Point> begPoints, List<Point> endPoints) {
+        AnnotationCanvas canvas = (direction == Direction.HORIZONTAL) ? this.horizontallyAnnotated : this.verticallyAnnotated;
+        long t = metrics.begin(AnalysisMetrics.Timer.ANNOTATE);
+        canvas.addLines(begPoints, endPoints);
+        metrics.end(AnalysisMetrics.Timer.ANNOTATE, t);
     }
 
+    /**
+     * Opens the image with a line kernel to keep only the lines of the given direction.
+     * @param image         The thresholded image, or the unthresholded one
+     *                      when the fused opening is used.
+     * @param direction     Direction of the lines to keep.
+     * @return              The opened image.
+     */
+    private Mat openLines(Mat image, Direction direction) {
+        int kernel = policy.scaleLength(KERNEL_LENGTH);
+        if (!fusedOpening) {
+            Size size = (direction == Direction.VERTICAL) ? new Size(1, kernel) : new Size(kernel, 1);
+            Mat structure = scope.track(Imgproc.getStructuringElement(Imgproc.MORPH_RECT, size));
+            Mat opened = scope.newMat();
+            Imgproc.erode(image, opened, structure);
+            Imgproc.dilate(opened, opened, structure);
+            scope.release(structure);
+            return opened;
+        }
+
+        LineOpening opening = new LineOpening(kernel, THRESHOLD);
+        int rows = image.rows();
+        int cols = image.cols();
+        int channels = image.channels();
+        Mat opened = scope.newMat(rows, cols, CvType.CV_8UC1);
+        if (direction == Direction.HORIZONTAL) {
+            byte[] src = new byte[cols * channels];
+            byte[] dst = new byte[cols];
+            for (int r = 0; r < rows; r++) {
+                if (r % STRIP_WIDTH == 0)
+                    checkCancelled();
+                image.get(r, 0, src);
+                opening.open(src, 0, channels, cols, dst, 0, 1);
+                opened.put(r, 0, dst);
+            }
+            return opened;
+        }
 
-    private void annotateImages(Direction direction, List<Point> begPoints, List<Point> endPoints, Scalar color) {
-        Mat image = (direction == Direction.HORIZONTAL) ? this.horizontallyAnnotated : this.verticallyAnnotated;
-        int end = Math.min(begPoints.size(), endPoints.size());
-        for (int i = 0; i < end; i++) {
-            Imgproc.line(image, begPoints.get(i), endPoints.get(i), color, ANNOTATION_THICKNESS);
+        // columns are opened a strip at a time so every copy covers whole strip rows
+        for (int c = 0; c < cols; c += STRIP_WIDTH) {
+            checkCancelled();
+            int width = Math.min(STRIP_WIDTH, cols - c);
+            Mat srcStrip = image.submat(0, rows, c, c + width);
+            Mat dstStrip = opened.submat(0, rows, c, c + width);
+            byte[] src = new byte[rows * width * channels];
+            byte[] dst = new byte[rows * width];
+            srcStrip.get(0, 0, src);
+            for (int j = 0; j < width; j++) {
+                opening.open(src, j * channels, width * channels, rows, dst, j, width);
+            }
+            dstStrip.put(0, 0, dst);
+            srcStrip.release();
+            dstStrip.release();
         }
+        return opened;
     }
 
     /**
-     * Checks if the entire vertical line of the specified column is valid.
-     * It has to have at least one black pixel to be considered as valid.
-     * @param binaryImage
-     * @param col
-     * @return
+     * Chooses the tile side for an analysed image: the one that was set, or
+     * {@link #AUTO_TILE_SIZE} for a large image opened with the fused opening.
      */
-    private boolean isVerticalLineValid(Mat binaryImage, int col) {
-        for (int i = 0; i < binaryImage.rows(); i++) {
-            if (binaryImage.get(i, col)[0] == 0)
-                return true;
-        }
-        return false;
+    private int chooseTileSize(Mat analysisImage) {
+        if (tileSize > 0)
+            return tileSize;
+        if (fusedOpening && analysisImage.total() > AUTO_TILE_PIXELS)
+            return AUTO_TILE_SIZE;
+        return 0;
     }
 
     /**
-     * Checks if the entire horizontal line of the specified row is valid.
-     * It has to have at least one black pixel to be considered as valid.
-     * @param binaryImage
-     * @param row
-     * @return
+     * Creates the tiled opening for the current resolution.
+     * @return the tiled opening operator
      */
-    private boolean isHorizontalLineValid(Mat binaryImage, int row) {
-        for (int i = 0; i < binaryImage.cols(); i++) {
-            if (binaryImage.get(row, i)[0] == 0)
-                return true;
-        }
-        return false;
+    private TiledOpening tiledOpening() {
+        return new TiledOpening(policy.scaleLength(KERNEL_LENGTH), THRESHOLD, activeTileSize);
     }
 
-
     /**
      * Counts the number of vertical lines from the photo.
+     * The opened image is encoded row by row and released right away.
      * @param binaryImage      Processed image.
+     * @return                 The vertical lines, encoded along the rows.
      */
     @RequiresApi(api = Build.VERSION_CODES.Q)
-    private Mat isolateVerticalLines(Mat binaryImage) {
-        Mat vBinImg = binaryImage.clone();
+    private RunLengthMask isolateVerticalLines(Mat binaryImage) {
         // Preprocess: Enhance vertical lines using morphology
-        Mat verticalStructure = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(1, 20));
-        Imgproc.erode(vBinImg, vBinImg, verticalStructure);
-        Imgproc.dilate(vBinImg, vBinImg, verticalStructure);
+        RunLengthMask vMask;
+        long t = metrics.begin(AnalysisMetrics.Timer.MORPHOLOGY);
+        if (activeTileSize > 0) {
+            vMask = tiledOpening().verticalLines(new MatTileSource(binaryImage));
+        }
+        else {
+            Mat vBinImg = openLines(binaryImage, Direction.VERTICAL);
+            vMask = RunLengthMask.encode(MatLineSource.rows(vBinImg), false);
+            scope.release(vBinImg);
+        }
+        metrics.end(AnalysisMetrics.Timer.MORPHOLOGY, t);
 
-        this.count.vertical = countVerticalLines(vBinImg);
-        return vBinImg;
+        t = metrics.begin(AnalysisMetrics.Timer.COUNT);
+        this.count.vertical = countThreads(vMask, Direction.VERTICAL);
+        metrics.end(AnalysisMetrics.Timer.COUNT, t);
+        return vMask;
     }
 
     /**
      * Counts the number of white spaces along vertical, representing the fibers.
-     * @param binary        The image to be analyzed.
+     * @param binaryImage   The image to be analyzed, encoded along the rows.
      * @return              The number of vertical lines.
      */
     @RequiresApi(api = Build.VERSION_CODES.Q)
-    private int countVerticalLines(Mat binary) {
-        Mat binaryImage = binary.clone();
-        int vCount = 0;
-        final Scalar LIME = new Scalar(57, 255, 20);
+    private int countVerticalLines(RunLengthMask binaryImage) {
         List<Point> begPoints = new ArrayList<>();
         List<Point> endPoints = new ArrayList<>();
 
         // loop through every LOOP_EVERY_PERCENT% of the image's rows and count the number of white pixels
-        int increment = (int) (binaryImage.rows() * (LOOP_EVERY_PERCENT / 100.0));
+        int increment = Math.max(1, (int) (binaryImage.lineCount() * (LOOP_EVERY_PERCENT / 100.0)));
+        int margin = policy.scaleLength(MARGIN);
+        int annotationLength = policy.scaleLength(ANNOTATION_LENGTH);
+        ScanlineCounter.Result result = countScanlines(binaryImage, increment, margin, 0);
+        int[] rows = result.lines;
+        recordScan(result, binaryImage.lineLength());
+
+        boolean verbose = Log.isLoggable("K-test1223", Log.VERBOSE);
+        LineCountStatistics statistics = new LineCountStatistics();
         int last_row = 0;
-        int rows = binaryImage.rows();
-
-        for (int i = MARGIN; i < rows - MARGIN; i += increment) {
-            if (!isHorizontalLineValid(binaryImage, i)) continue;
-
-            int count = 0;
-            boolean wasLastWhite = false;
-            int cols = binaryImage.cols();
-            for (int j = 0; j < cols; j++) {
-                if (j == cols-1)
-                    Log.v("K-test0102", "Reached end of col");
-                if (binaryImage.get(i, j)[0] == 255) {
-                    if (!wasLastWhite) {
-                        begPoints.add(new Point(j, i));
-                        endPoints.add(new Point(j, i + ANNOTATION_LENGTH));
-                        count++;
-                        wasLastWhite = true;
-                    }
-                }
-                else if (wasLastWhite) {
-                    wasLastWhite = false;
-                }
-            }
-            Log.v("K-test1223", "Count at column " + i + ": " + count);
-            if (count > vCount) {
-                vCount = count;
+        for (int k = 0; k < rows.length; k++) {
+            if (!result.isValid(k)) continue;
+            statistics.add(result.counts[k]);
+
+            int i = rows[k];
+            for (int j : result.runStarts[k]) {
+                begPoints.add(toCaptured(j, i));
+                endPoints.add(toCaptured(j, i + annotationLength));
             }
+            if (verbose)
+                Log.v("K-test1223", "Count at column " + i + ": " + result.counts[k]);
             last_row = i;
         }
+        int vCount = result.max();
+        count.verticalStatistics = statistics;
+        Log.v(TAG, "Vertical lines: " + statistics);
         Log.v("K-test0102", "increment=" + increment);
         Log.v("K-test0102", "last_row=" + last_row);
-        Log.v("K-test0102", "row count=" + binaryImage.rows());
+        Log.v("K-test0102", "row count=" + binaryImage.lineCount());
 
-        annotateImages(Direction.VERTICAL, begPoints, endPoints, LIME);
+        annotateImages(Direction.VERTICAL, begPoints, endPoints);
         Log.v("K-test1223", "Vertical Count: " + vCount);
         return vCount;
     }
@@ -315,70 +861,207 @@ public class FiberCounter {
 
     /**
      * Counts the number of vertical lines from the photo.
+     * The opened image is encoded column by column and released right away.
      * @param binaryImage   The current processed image.
+     * @return              The horizontal lines, encoded along the columns.
      */
     @RequiresApi(api = Build.VERSION_CODES.Q)
-    private Mat isolateHorizontalLines(Mat binaryImage) {
-        Mat hBinImg = binaryImage.clone();
-
+    private RunLengthMask isolateHorizontalLines(Mat binaryImage) {
         // Preprocess: Enhance horizontal lines using morphology
-        Mat horizontalStructure = Imgproc.getStructuringElement(Imgproc.MORPH_RECT, new Size(20, 1));
-        Imgproc.erode(hBinImg, hBinImg, horizontalStructure);
-        Imgproc.dilate(hBinImg, hBinImg, horizontalStructure);
+        RunLengthMask hMask;
+        long t = metrics.begin(AnalysisMetrics.Timer.MORPHOLOGY);
+        if (activeTileSize > 0) {
+            hMask = tiledOpening().horizontalLines(new MatTileSource(binaryImage));
+        }
+        else {
+            Mat hBinImg = openLines(binaryImage, Direction.HORIZONTAL);
+            hMask = RunLengthMask.encode(MatLineSource.columns(hBinImg), true);
+            scope.release(hBinImg);
+        }
+        metrics.end(AnalysisMetrics.Timer.MORPHOLOGY, t);
 
-        int hCount = countHorizontalLines(hBinImg);
+        t = metrics.begin(AnalysisMetrics.Timer.COUNT);
+        int hCount = countThreads(hMask, Direction.HORIZONTAL);
+        metrics.end(AnalysisMetrics.Timer.COUNT, t);
         System.out.println("Number of Horizontal Lines: " + hCount);
 
         count.horizontal = hCount;
-        return hBinImg;
+        return hMask;
     }
 
     /**
      * Counts the number of white spaces along horizontal, which represents the fibers.
-     * @param binaryImage   Image to process.
+     * @param binaryImage   Image to process, encoded along the columns.
      * @return              Number of horizontal lines.
      */
     @RequiresApi(api = Build.VERSION_CODES.Q)
-    private int countHorizontalLines(Mat binaryImage) {
-        int hCount = 0;
+    private int countHorizontalLines(RunLengthMask binaryImage) {
         List<Point> begPoints = new ArrayList<>();
         List<Point> endPoints = new ArrayList<>();
 
         // loop through every LOOP_EVERY_PERCENT% of the image's columns and count the number of white pixels
-        int increment = (int) (binaryImage.cols() * (LOOP_EVERY_PERCENT / 100.0));
+        int increment = Math.max(1, (int) (binaryImage.lineCount() * (LOOP_EVERY_PERCENT / 100.0)));
+        int margin = policy.scaleLength(MARGIN);
+        int annotationLength = policy.scaleLength(ANNOTATION_LENGTH);
+        ScanlineCounter.Result result = countScanlines(binaryImage, increment, margin, margin);
+        int[] cols = result.lines;
+        recordScan(result, binaryImage.lineLength() - margin);
+
+        boolean verbose = Log.isLoggable("K-test1223", Log.VERBOSE);
+        LineCountStatistics statistics = new LineCountStatistics();
         int last_col = 0;
+        for (int k = 0; k < cols.length; k++) {
+            if (!result.isValid(k)) continue;
+            statistics.add(result.counts[k]);
 
-        for (int i = MARGIN; i < binaryImage.cols() - MARGIN; i += increment) {
-            if (!isVerticalLineValid(binaryImage, i)) continue;
-
-            int count = 0;
-            boolean wasLastWhite = false;
-            for (int j = 10; j < binaryImage.rows(); j++) {
-                if (binaryImage.get(j, i)[0] == 255) {
-                    if (!wasLastWhite) {
-                        begPoints.add(new Point(i, j));
-                        endPoints.add(new Point(i + ANNOTATION_LENGTH, j));
-                        count++;
-                        wasLastWhite = true;
-                    }
-                }
-                else if (wasLastWhite) {
-                    wasLastWhite = false;
-                }
-            }
-            Log.v("K-test1223", "Count at row " + i + ": " + count);
-            if (count > hCount) {
-                hCount = count;
+            int i = cols[k];
+            for (int j : result.runStarts[k]) {
+                begPoints.add(toCaptured(i, j));
+                endPoints.add(toCaptured(i + annotationLength, j));
             }
+            if (verbose)
+                Log.v("K-test1223", "Count at row " + i + ": " + result.counts[k]);
             last_col = i;
         }
+        int hCount = result.max();
+        count.horizontalStatistics = statistics;
+        Log.v(TAG, "Horizontal lines: " + statistics);
 
         Log.v("K-test0102", "increment=" + increment);
         Log.v("K-test0102", "last_col=" + last_col);
-        Log.v("K-test0102", "col count=" + binaryImage.cols());
+        Log.v("K-test0102", "col count=" + binaryImage.lineCount());
 
-        annotateImages(Direction.HORIZONTAL, begPoints, endPoints, new Scalar(218, 20, 255));
+        annotateImages(Direction.HORIZONTAL, begPoints, endPoints);
         Log.v("K-test1223", "Horizontal count: " + hCount);
         return hCount;
     }
-}
\ No newline at end of file
+
+    /**
+     * Counts the white runs of the sampled scanlines of a mask: every
+     * {@code increment}-th line, or only as many as it takes the counts to
+     * settle when a sampling tolerance is set.
+     * @param mask      The opened mask.
+     * @param increment Distance between two sampled lines.
+     * @param margin    Lines skipped at both ends.
+     * @param from      First pixel of every line to inspect.
+     * @return          The counts of the sampled scanlines, in line order.
+     */
+    private ScanlineCounter.Result countScanlines(RunLengthMask mask, int increment, int margin, int from) {
+        if (samplingTolerance > 0)
+            return new AdaptiveLineSampler(samplingTolerance, parallelism).count(mask, increment, margin, from);
+        int[] lines = ScanlineCounter.sampleLines(mask.lineCount(), margin, increment);
+        return new ScanlineCounter(parallelism).count(mask, lines, from);
+    }
+
+    /**
+     * Adds the pixels and transitions of the sampled scanlines to the metrics.
+     * @param result    The counts of the sampled scanlines.
+     * @param length    Number of pixels inspected per scanline.
+     */
+    private void recordScan(ScanlineCounter.Result result, int length) {
+        if (!metrics.isEnabled())
+            return;
+        long transitions = 0;
+        for (int c : result.counts)
+            transitions += c;
+        metrics.add(AnalysisMetrics.Counter.PIXELS_SCANNED, (long) result.lines.length * length);
+        metrics.add(AnalysisMetrics.Counter.TRANSITIONS, transitions);
+    }
+
+    /**
+     * Counts the threads of a mask with the selected engine.
+     * @param mask          The opened mask.
+     * @param direction     Direction of the lines in the mask.
+     * @return              Number of lines.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    private int countThreads(RunLengthMask mask, Direction direction) {
+        switch (engine) {
+            case PROJECTION:
+                return countProfilePeaks(mask, direction);
+            case COMPONENTS:
+                return countComponents(mask, direction);
+            default:
+                return (direction == Direction.VERTICAL) ? countVerticalLines(mask) : countHorizontalLines(mask);
+        }
+    }
+
+    /**
+     * Counts the threads of a mask as the peaks of its projection profile.
+     * Every peak is marked across the middle scanline.
+     * @param mask          The opened mask.
+     * @param direction     Direction of the lines in the mask.
+     * @return              Number of lines.
+     */
+    private int countProfilePeaks(RunLengthMask mask, Direction direction) {
+        ProjectionProfileCounter.Result result =
+                new ProjectionProfileCounter(policy.scaleLength(PROFILE_WINDOW)).count(mask);
+        metrics.add(AnalysisMetrics.Counter.PIXELS_SCANNED, (long) mask.lineCount() * mask.lineLength());
+        metrics.add(AnalysisMetrics.Counter.TRANSITIONS, result.count());
+        markThreads(mask.lineCount() / 2, direction, result.peaks);
+        Log.v(TAG, direction + " profile peaks: " + result.count());
+        return result.count();
+    }
+
+    /**
+     * Counts the threads of a mask as its long connected components. A
+     * break shorter than the kernel does not split a thread. Every thread
+     * is marked across the middle scanline.
+     * @param mask          The opened mask.
+     * @param direction     Direction of the lines in the mask.
+     * @return              Number of lines.
+     */
+    private int countComponents(RunLengthMask mask, Direction direction) {
+        ComponentCounter.Result result = new ComponentCounter(ComponentCounter.DEFAULT_MIN_SPAN,
+                policy.scaleLength(KERNEL_LENGTH)).count(mask);
+        metrics.add(AnalysisMetrics.Counter.PIXELS_SCANNED, (long) mask.lineCount() * mask.lineLength());
+        metrics.add(AnalysisMetrics.Counter.TRANSITIONS, result.count());
+        markThreads(mask.lineCount() / 2, direction, result.threads);
+        Log.v(TAG, direction + " components: " + result.count() + " threads of " + result.components
+                + ", sizes by power of two " + Arrays.toString(result.sizeHistogram));
+        return result.count();
+    }
+
+    /**
+     * Counts the threads of one direction from the dominant frequency of
+     * the image's profile across them. Every thread is marked across the
+     * middle of the image.
+     * @param image         The analysed image, not thresholded.
+     * @param direction     Direction of the lines to count.
+     * @return              Number of lines.
+     */
+    private int countSpectrum(Mat image, Direction direction) {
+        long t = metrics.begin(AnalysisMetrics.Timer.COUNT);
+        boolean vertical = direction == Direction.VERTICAL;
+        Mat profile = scope.track(SpectralCounter.profile(image, vertical));
+        SpectralCounter.Result result = new SpectralCounter().count(profile);
+        scope.release(profile);
+        metrics.end(AnalysisMetrics.Timer.COUNT, t);
+        metrics.add(AnalysisMetrics.Counter.PIXELS_SCANNED, image.total());
+        metrics.add(AnalysisMetrics.Counter.TRANSITIONS, result.count());
+        markThreads((vertical ? image.rows() : image.cols()) / 2, direction, result.threads);
+        Log.v(TAG, String.format(Locale.US, "%s spectrum: %d threads, pitch %.2f px, strength %.2f",
+                direction, result.count(), result.pitch, result.strength));
+        return result.count();
+    }
+
+    /**
+     * Marks the threads found at the given positions across the middle scanline.
+     */
+    private void markThreads(int middle, Direction direction, int[] positions) {
+        List<Point> begPoints = new ArrayList<>();
+        List<Point> endPoints = new ArrayList<>();
+        int annotationLength = policy.scaleLength(ANNOTATION_LENGTH);
+        for (int p : positions) {
+            if (direction == Direction.VERTICAL) {
+                begPoints.add(toCaptured(p, middle));
+                endPoints.add(toCaptured(p, middle + annotationLength));
+            }
+            else {
+                begPoints.add(toCaptured(middle, p));
+                endPoints.add(toCaptured(middle + annotationLength, p));
+            }
+        }
+        annotateImages(direction, begPoints, endPoints);
+    }
+}
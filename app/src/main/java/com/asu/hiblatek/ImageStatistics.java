@@ -0,0 +1,111 @@
+package com.asu.hiblatek;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Cheap statistics of a photo, measured on a few rows and columns before
+ * the analysis: its size, its contrast and its thread pitch.
+ *
+ * @author Kirk M. Hilario
+ */
+class ImageStatistics {
+    /**
+     * Percentiles of the grey levels whose difference is the contrast.
+     */
+    static final double LOW_PERCENTILE = 0.05;
+    static final double HIGH_PERCENTILE = 0.95;
+    final int width;
+    final int height;
+    /**
+     * Spread of the grey levels between the low and high percentiles.
+     */
+    final int contrast;
+    /**
+     * Distance between two threads in pixels, or {@code 0} if unknown.
+     */
+    final double pitch;
+
+    ImageStatistics(int width, int height, int contrast, double pitch) {
+        this.width = width;
+        this.height = height;
+        this.contrast = contrast;
+        this.pitch = pitch;
+    }
+
+    /**
+     * Measures an image on evenly spaced rows and columns. Only the first
+     * channel of every pixel is used.
+     * @param rows      The rows of the image.
+     * @param columns   The columns of the image.
+     * @param samples   Number of rows, and of columns, to read.
+     * @param threshold Highest value that is considered black when
+     *                  counting the threads.
+     * @return          The statistics.
+     */
+    static ImageStatistics measure(LineSource rows, LineSource columns, int samples, int threshold) {
+        long[] histogram = new long[256];
+        double rowPitch = measurePitch(rows, samples, threshold, histogram);
+        double colPitch = measurePitch(columns, samples, threshold, histogram);
+        double pitch;
+        if (rowPitch <= 0) pitch = colPitch;
+        else if (colPitch <= 0) pitch = rowPitch;
+        else pitch = Math.min(rowPitch, colPitch);
+        int contrast = percentile(histogram, HIGH_PERCENTILE) - percentile(histogram, LOW_PERCENTILE);
+        return new ImageStatistics(rows.lineLength(), rows.lineCount(), contrast, pitch);
+    }
+
+    /**
+     * Returns the statistics of the image resized by the given factor.
+     * @param scale Factor from the measured to the resized pixels.
+     * @return      The scaled statistics.
+     */
+    ImageStatistics scaled(double scale) {
+        return new ImageStatistics((int) Math.round(width * scale), (int) Math.round(height * scale),
+                contrast, pitch * scale);
+    }
+
+    /**
+     * Returns the number of pixels.
+     * @return the area of the image
+     */
+    long pixels() {
+        return (long) width * height;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%dx%d, contrast %d, pitch %.1f px", width, height, contrast, pitch);
+    }
+
+    /**
+     * Returns the median pitch of the sampled lines, and adds their pixels
+     * to the histogram.
+     */
+    private static double measurePitch(LineSource source, int samples, int threshold, long[] histogram) {
+        int length = source.lineLength();
+        int stride = source.stride();
+        byte[] line = new byte[length * stride];
+        int[] runs = new int[samples];
+        for (int k = 0; k < samples; k++) {
+            source.read(source.lineCount() * (k + 1) / (samples + 1), line);
+            runs[k] = ScanlineScanner.countRunsAbove(line, length, stride, threshold);
+            for (int p = 0, i = 0; p < length; p++, i += stride)
+                histogram[line[i] & 0xFF]++;
+        }
+        Arrays.sort(runs);
+        return ResolutionPolicy.pitch(length, runs[samples / 2]);
+    }
+
+    private static int percentile(long[] histogram, double fraction) {
+        long total = 0;
+        for (long n : histogram) total += n;
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int v = 0; v < histogram.length; v++) {
+            seen += histogram[v];
+            if (seen >= Math.max(1, target)) return v;
+        }
+        return histogram.length - 1;
+    }
+}
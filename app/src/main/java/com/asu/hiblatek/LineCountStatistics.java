@@ -0,0 +1,194 @@
+package com.asu.hiblatek;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Summarises the thread counts of the sampled scanlines in one pass,
+ * without keeping the counts.
+ * <p>
+ * The mean and variance are updated with Welford's method and the median
+ * is estimated with the P² algorithm of Jain and Chlamtac, which moves
+ * five markers towards the quartiles as the counts arrive. A count is an
+ * outlier when it is more than {@link #OUTLIER_TOLERANCE} of the median
+ * away from the median known when it arrived. Together they tell how far
+ * the lines agree, which {@link #confidence(int)} turns into a score.
+ *
+ * @author Kirk M. Hilario
+ */
+class LineCountStatistics {
+    /**
+     * Largest deviation from the median, as a fraction of it, of a count
+     * that is not an outlier. A deviation of one thread is always accepted.
+     */
+    static final double OUTLIER_TOLERANCE = 0.1;
+    private static final double[] INCREMENTS = {0, 0.25, 0.5, 0.75, 1};
+
+    private int n = 0;
+    private double mean = 0;
+    private double m2 = 0;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+    private int outliers = 0;
+    /**
+     * Heights of the P² markers; the first counts until there are five.
+     */
+    private final double[] heights = new double[5];
+    private final int[] positions = {1, 2, 3, 4, 5};
+    private final double[] desired = {1, 2, 3, 4, 5};
+
+    /**
+     * Adds the count of one scanline.
+     * @param count Number of threads crossed by the line.
+     */
+    void add(int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        n++;
+        double delta = count - mean;
+        mean += delta / n;
+        m2 += delta * (count - mean);
+        min = Math.min(min, count);
+        max = Math.max(max, count);
+
+        if (n < 5) {
+            heights[n - 1] = count;
+            return;
+        }
+        if (n == 5) {
+            heights[4] = count;
+            Arrays.sort(heights);
+            // the first counts are judged once there is a median to judge them by
+            for (double h : heights) {
+                if (isOutlier(h, heights[2])) outliers++;
+            }
+            return;
+        }
+        if (isOutlier(count, heights[2])) outliers++;
+        updateMarkers(count);
+    }
+
+    private static boolean isOutlier(double count, double median) {
+        return Math.abs(count - median) > Math.max(1, OUTLIER_TOLERANCE * median);
+    }
+
+    private void updateMarkers(double x) {
+        int k;
+        if (x < heights[0]) {
+            heights[0] = x;
+            k = 0;
+        }
+        else if (x >= heights[4]) {
+            heights[4] = x;
+            k = 3;
+        }
+        else {
+            k = 0;
+            while (x >= heights[k + 1]) k++;
+        }
+        for (int i = k + 1; i < 5; i++)
+            positions[i]++;
+        for (int i = 0; i < 5; i++)
+            desired[i] += INCREMENTS[i];
+
+        for (int i = 1; i < 4; i++) {
+            double d = desired[i] - positions[i];
+            if ((d >= 1 && positions[i + 1] - positions[i] > 1)
+                    || (d <= -1 && positions[i - 1] - positions[i] < -1)) {
+                int s = d > 0 ? 1 : -1;
+                double h = parabolic(i, s);
+                if (heights[i - 1] < h && h < heights[i + 1])
+                    heights[i] = h;
+                else
+                    heights[i] += s * (heights[i + s] - heights[i]) / (positions[i + s] - positions[i]);
+                positions[i] += s;
+            }
+        }
+    }
+
+    private double parabolic(int i, int s) {
+        double left = positions[i] - positions[i - 1];
+        double right = positions[i + 1] - positions[i];
+        return heights[i] + s / (double) (positions[i + 1] - positions[i - 1])
+                * ((left + s) * (heights[i + 1] - heights[i]) / right
+                + (right - s) * (heights[i] - heights[i - 1]) / left);
+    }
+
+    /**
+     * Returns the number of counts added.
+     * @return the number of counted lines
+     */
+    int count() {
+        return n;
+    }
+
+    double mean() {
+        return mean;
+    }
+
+    /**
+     * Returns the sample variance of the counts.
+     * @return the variance, or zero for fewer than two counts
+     */
+    double variance() {
+        return n < 2 ? 0 : m2 / (n - 1);
+    }
+
+    double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    /**
+     * Returns the estimated median of the counts; exact for up to five.
+     * @return the median, or zero if nothing was added
+     */
+    double median() {
+        if (n == 0)
+            return 0;
+        if (n >= 5)
+            return heights[2];
+        double[] first = Arrays.copyOf(heights, n);
+        Arrays.sort(first);
+        return (n % 2 == 1) ? first[n / 2] : (first[n / 2 - 1] + first[n / 2]) / 2;
+    }
+
+    int min() {
+        return n == 0 ? 0 : min;
+    }
+
+    int max() {
+        return n == 0 ? 0 : max;
+    }
+
+    /**
+     * Returns the fraction of the counts that were outliers. Fewer than
+     * five counts have no median to be judged by and are all accepted.
+     * @return the outlier fraction, between {@code 0} and {@code 1}
+     */
+    double outlierFraction() {
+        return n == 0 ? 0 : outliers / (double) n;
+    }
+
+    /**
+     * Scores how well the lines support a reported count: the fraction of
+     * lines that are not outliers, reduced by the spread of the counts
+     * relative to their mean and by the disagreement between the reported
+     * count and the median.
+     * @param reported  The count reported for the direction.
+     * @return          A score between {@code 0}, unreliable, and {@code 1}.
+     */
+    double confidence(int reported) {
+        if (n == 0 || reported <= 0)
+            return 0;
+        double spread = Math.min(1, standardDeviation() / Math.max(1, mean));
+        double median = median();
+        double agreement = Math.min(median, reported) / Math.max(median, reported);
+        return (1 - outlierFraction()) * (1 - spread) * agreement;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "n=%d mean=%.2f sd=%.2f median=%.1f range=%d-%d outliers=%.0f%%",
+                n, mean, standardDeviation(), median(), min(), max(), 100 * outlierFraction());
+    }
+}
@@ -0,0 +1,120 @@
+package com.asu.hiblatek;
+
+/**
+ * Morphological opening with a 1×N or N×1 rectangle, fused with the
+ * binary threshold that precedes it.
+ * <p>
+ * Erosion and dilation use the van Herk/Gil-Werman running minimum and
+ * maximum, so every pixel costs a constant number of comparisons whatever
+ * the kernel length. Both passes use the same window as
+ * {@code Imgproc.erode}/{@code Imgproc.dilate} with the default anchor and
+ * border: pixel {@code i} looks at {@code [i - N/2, i - N/2 + N)} and pixels
+ * outside the line are ignored.
+ * <p>
+ * An instance holds scratch buffers and must not be shared between threads.
+ *
+ * @author Kirk M. Hilario
+ */
+class LineOpening {
+    private final int kernel;
+    private final int anchor;
+    private final int threshold;
+    private int capacity;
+    private int[] padded;
+    private int[] prefix;
+    private int[] suffix;
+
+    /**
+     * Creates an opening operator.
+     * @param kernel    Length of the line kernel in pixels.
+     * @param threshold Highest value that is thresholded to black.
+     */
+    LineOpening(int kernel, int threshold) {
+        if (kernel < 1)
+            throw new IllegalArgumentException("kernel must be at least 1: " + kernel);
+        this.kernel = kernel;
+        this.anchor = kernel / 2;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Thresholds and opens one scanline. Only the first channel of every
+     * source pixel is used; the result is {@code 0} or {@code 255}.
+     * @param src       Source buffer.
+     * @param srcOffset Index of the first pixel in {@code src}.
+     * @param srcStride Distance between two pixels in {@code src}.
+     * @param length    Number of pixels in the scanline.
+     * @param dst       Destination buffer.
+     * @param dstOffset Index of the first pixel in {@code dst}.
+     * @param dstStride Distance between two pixels in {@code dst}.
+     */
+    void open(byte[] src, int srcOffset, int srcStride, int length,
+              byte[] dst, int dstOffset, int dstStride) {
+        ensureCapacity(length + kernel - 1);
+        int m = length + kernel - 1;
+
+        // threshold into the padded line; the border never wins a minimum
+        fill(padded, 0, anchor, ScanlineScanner.WHITE);
+        for (int p = 0, k = srcOffset; p < length; p++, k += srcStride) {
+            padded[anchor + p] = (src[k] & 0xFF) > threshold ? ScanlineScanner.WHITE : ScanlineScanner.BLACK;
+        }
+        fill(padded, anchor + length, m, ScanlineScanner.WHITE);
+        runningMin(m);
+        for (int p = 0; p < length; p++) {
+            padded[anchor + p] = Math.min(suffix[p], prefix[p + kernel - 1]);
+        }
+
+        // dilate the eroded line; the border never wins a maximum
+        fill(padded, 0, anchor, ScanlineScanner.BLACK);
+        fill(padded, anchor + length, m, ScanlineScanner.BLACK);
+        runningMax(m);
+        for (int p = 0, k = dstOffset; p < length; p++, k += dstStride) {
+            dst[k] = (byte) Math.max(suffix[p], prefix[p + kernel - 1]);
+        }
+    }
+
+    /**
+     * Fills {@link #prefix} and {@link #suffix} with the minimum from the
+     * start of each block of {@code kernel} values, and to its end.
+     */
+    private void runningMin(int m) {
+        for (int start = 0; start < m; start += kernel) {
+            int end = Math.min(start + kernel, m);
+            prefix[start] = padded[start];
+            for (int j = start + 1; j < end; j++)
+                prefix[j] = Math.min(prefix[j - 1], padded[j]);
+            suffix[end - 1] = padded[end - 1];
+            for (int j = end - 2; j >= start; j--)
+                suffix[j] = Math.min(suffix[j + 1], padded[j]);
+        }
+    }
+
+    /**
+     * Same as {@link #runningMin(int)} with the maximum.
+     */
+    private void runningMax(int m) {
+        for (int start = 0; start < m; start += kernel) {
+            int end = Math.min(start + kernel, m);
+            prefix[start] = padded[start];
+            for (int j = start + 1; j < end; j++)
+                prefix[j] = Math.max(prefix[j - 1], padded[j]);
+            suffix[end - 1] = padded[end - 1];
+            for (int j = end - 2; j >= start; j--)
+                suffix[j] = Math.max(suffix[j + 1], padded[j]);
+        }
+    }
+
+    private void ensureCapacity(int m) {
+        if (m > capacity) {
+            capacity = m;
+            padded = new int[m];
+            prefix = new int[m];
+            suffix = new int[m];
+        }
+    }
+
+    private static void fill(int[] a, int from, int to, int value) {
+        for (int j = from; j < to; j++)
+            a[j] = value;
+    }
+}
@@ -0,0 +1,37 @@
+package com.asu.hiblatek;
+
+/**
+ * A set of equally long scanlines (rows or columns of an image) that can
+ * be copied into a reusable buffer.
+ * <p>
+ * Implementations must allow {@link #read(int, byte[])} to be called from
+ * several threads at once.
+ *
+ * @author Kirk M. Hilario
+ */
+interface LineSource {
+    /**
+     * Returns the number of scanlines.
+     * @return the number of scanlines
+     */
+    int lineCount();
+
+    /**
+     * Returns the number of pixels in every scanline.
+     * @return the number of pixels per scanline
+     */
+    int lineLength();
+
+    /**
+     * Returns the number of interleaved channels per pixel.
+     * @return the number of channels per pixel
+     */
+    int stride();
+
+    /**
+     * Copies the specified scanline into the buffer.
+     * @param line      Index of the scanline.
+     * @param buffer    Receives {@code lineLength() * stride()} values.
+     */
+    void read(int line, byte[] buffer);
+}
@@ -0,0 +1,103 @@
+package com.asu.hiblatek;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.camera.core.ImageAnalysis;
+import androidx.camera.core.ImageProxy;
+
+import java.util.Locale;
+
+/**
+ * Counts the threads of every preview frame delivered by CameraX.
+ * <p>
+ * Only the Y plane of the frame is read, and it is counted in place by a
+ * {@link PreviewCounter}, without copying it. The counts, the frame rate and the time spent on
+ * each frame are posted to the main thread. The analyzer is meant for an
+ * {@link ImageAnalysis} that keeps only the latest frame, so a slow frame
+ * makes the camera drop frames rather than queue them.
+ *
+ * @author Kirk M. Hilario
+ */
+class LiveCountAnalyzer implements ImageAnalysis.Analyzer {
+    private static final String TAG = "hiblatek.LiveCount";
+    /**
+     * Weight of the newest frame in the averaged frame rate and latency.
+     */
+    private static final double SMOOTHING = 0.1;
+    /**
+     * Number of frames between two latency reports in the log.
+     */
+    private static final int LOG_EVERY_FRAMES = 30;
+
+    /**
+     * Receives the live counts on the main thread.
+     */
+    interface Listener {
+        /**
+         * Called after every analysed frame.
+         * @param count     The count, in the orientation of the display.
+         * @param fps       Averaged number of frames analysed per second.
+         * @param latencyMs Averaged time spent on one frame, in milliseconds.
+         */
+        void onLiveCount(FiberCounter.Count count, double fps, double latencyMs);
+    }
+
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private PreviewCounter counter = null;
+    private long lastFrameNanos = 0;
+    private double fps = 0;
+    private double latencyMs = 0;
+    private int frames = 0;
+
+    /**
+     * Creates an analyzer.
+     * @param listener  Receives the live counts.
+     */
+    LiveCountAnalyzer(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void analyze(@NonNull ImageProxy image) {
+        long start = System.nanoTime();
+        FiberCounter.Count count;
+        try {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            ImageProxy.PlaneProxy plane = image.getPlanes()[0];
+            if (counter == null || !counter.fits(width, height))
+                counter = new PreviewCounter(width, height);
+
+            // the plane is read in place, one line at a time
+            count = counter.count(plane.getBuffer(), plane.getRowStride());
+
+            if (image.getImageInfo().getRotationDegrees() % 180 != 0)
+                count.rotate();
+        }
+        finally {
+            image.close();
+        }
+        long end = System.nanoTime();
+        updateStatistics(start, end);
+
+        double fps = this.fps;
+        double latencyMs = this.latencyMs;
+        mainHandler.post(() -> listener.onLiveCount(count, fps, latencyMs));
+    }
+
+    private void updateStatistics(long start, long end) {
+        double latency = (end - start) / 1e6;
+        latencyMs = (frames == 0) ? latency : latencyMs + SMOOTHING * (latency - latencyMs);
+        if (lastFrameNanos != 0) {
+            double rate = 1e9 / (end - lastFrameNanos);
+            fps = (fps == 0) ? rate : fps + SMOOTHING * (rate - fps);
+        }
+        lastFrameNanos = end;
+        if (++frames % LOG_EVERY_FRAMES == 0)
+            Log.v(TAG, String.format(Locale.US, "%.1f fps, %.1f ms per frame", fps, latencyMs));
+    }
+}
@@ -1,6 +1,5 @@
 package com.asu.hiblatek;
 
-import android.content.ContentResolver;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -22,6 +21,7 @@ import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.ProgressBar;
 import android.widget.Spinner;
 import android.widget.TableLayout;
 import android.widget.TextView;
@@ -35,14 +35,13 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
 import androidx.core.content.FileProvider;
+import androidx.lifecycle.ViewModelProvider;
 
 import org.opencv.android.BaseLoaderCallback;
 import org.opencv.android.LoaderCallbackInterface;
 import org.opencv.android.OpenCVLoader;
 
 import java.io.File;
-import java.io.IOException;
-import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
     private final String SHARED_PREF_DISCLAIMER_LABEL = "hiblatek.disclaimer";
@@ -60,12 +59,13 @@ public class MainActivity extends AppCompatActivity {
     private TextView tvOrientationSpec;
     private ImageView btNew;
     private ImageView imageView;
+    private ProgressBar pbAnalysis;
     private Uri mImageUri;
     private TextView spWarp;
     private TextView spWeft;
     private TextView spOrientation;
-    private List<Bitmap> imageList = null;
-    private int index = 0;
+    private ResultCarousel carousel = null;
+    private AnalysisViewModel analysisViewModel;
     private String selectedWarp = "- Please select -";
     private String selectedWeft = "- Please select -";
     private String selectedOrientation = "horizontal";
@@ -99,9 +99,16 @@ public class MainActivity extends AppCompatActivity {
         tvWarpSpec = findViewById(R.id.warp_spec);
         tvWeftSpec = findViewById(R.id.weft_spec);
         tvOrientationSpec = findViewById(R.id.orientation_spec);
+        pbAnalysis = findViewById(R.id.pbAnalysis);
+        pbAnalysis.setMax(FiberCounter.Stage.DONE.ordinal());
 
         displayMenu(true);
 
+        // the analysis outlives this activity; observers are dropped with it
+        analysisViewModel = new ViewModelProvider(this).get(AnalysisViewModel.class);
+        analysisViewModel.getStage().observe(this, this::displayProgress);
+        analysisViewModel.getAnalysis().observe(this, this::displayResult);
+
         Button btnCapture = this.findViewById(R.id.btnCapture);
         spWarp.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -162,14 +169,13 @@ public class MainActivity extends AppCompatActivity {
         });
 
         imageView.setOnClickListener(view -> {
-            if (imageList != null && imageList.size() > 0) {
-                index = ++index % imageList.size();
-                imageView.setImageBitmap(imageList.get(index));
-//                displayBitmapWithBorders(imageList.get(index));
+            if (carousel != null) {
+                carousel.showNext();
             }
         });
 
         btNew.setOnClickListener(view -> {
+            analysisViewModel.clear();
             displayMenu(true);
         });
 
@@ -192,8 +198,10 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // delete all the created temporary files
-        deleteTempFiles(new File(getExternalFilesDir(null)+"/.temp/"));
+        if (carousel != null) carousel.close();
+        // delete all the created temporary files, unless a running analysis survives the rotation
+        if (!isChangingConfigurations())
+            deleteTempFiles(new File(getExternalFilesDir(null)+"/.temp/"));
     }
 
     @RequiresApi(api = Build.VERSION_CODES.Q)
@@ -201,17 +209,11 @@ public class MainActivity extends AppCompatActivity {
         super.onActivityResult(requestCode, resultCode, data);
         if (resultCode == RESULT_OK) {
             if (CAMERA_REQUEST == requestCode) {
-                Bitmap b = grabImage(imageView);
+                this.getContentResolver().notifyChange(mImageUri, null);
                 Log.v(TAG, mImageUri.getEncodedPath());
-                processImage(b);
+                processImage(mImageUri);
             } else if (GALLERY_REQUEST == requestCode) {
-                Uri selectedImage = data.getData();
-                try {
-                    Bitmap b = MediaStore.Images.Media.getBitmap(getApplicationContext().getContentResolver(), selectedImage);
-                    processImage(b);
-                } catch (IOException e) {
-                    Log.i(TAG, "Error: " + e);
-                }
+                processImage(data.getData());
             }
         }
     }
@@ -229,6 +231,10 @@ public class MainActivity extends AppCompatActivity {
             displayDisclaimer(true);
             return true;
         }
+        if (item.getItemId() == R.id.action_engine) {
+            displayEngineChoice();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
@@ -243,36 +249,52 @@ public class MainActivity extends AppCompatActivity {
         return File.createTempFile(part, ext, tempDir);
     }
 
-    public Bitmap grabImage(ImageView imageView)
-    {
-        this.getContentResolver().notifyChange(mImageUri, null);
-        ContentResolver cr = this.getContentResolver();
-        Bitmap bitmap;
-        try
-        {
-            bitmap = android.provider.MediaStore.Images.Media.getBitmap(cr,    mImageUri);
-            imageView.setImageBitmap(bitmap);
-            return bitmap;
-        }
-        catch (Exception e)
-        {
-            Toast.makeText(this, "Failed to load", Toast.LENGTH_SHORT).show();
-            Log.d(TAG, "Failed to load", e);
-            return null;
+    /**
+     * Decodes the photo and runs the {@code FiberCounter} class on it in the background.
+     * The analysis of a previous photo is cancelled.
+     * @param uri the photo
+     */
+    @RequiresApi(api = Build.VERSION_CODES.Q)
+    private void processImage(Uri uri) {
+        if (uri == null) return;
+        analysisViewModel.analyze(uri);
+    }
+
+    /**
+     * Shows the stage of the running analysis.
+     * @param stage the stage, or {@code null} when nothing runs
+     */
+    private void displayProgress(FiberCounter.Stage stage) {
+        if (stage == null || stage == FiberCounter.Stage.DONE) {
+            pbAnalysis.setVisibility(View.GONE);
+            tvSubtitle.setText("Fiber Counter");
+            return;
         }
+        pbAnalysis.setVisibility(View.VISIBLE);
+        pbAnalysis.setProgress(stage.ordinal());
+        tvSubtitle.setText(stage.label + "...");
     }
 
     /**
-     * Runs the {@code FiberCounter} class to the bitmap image.
-     * @param b the bitmap image
+     * Shows the outcome of an analysis.
+     * @param analysis the outcome, or {@code null} while there is none
      */
-    @RequiresApi(api = Build.VERSION_CODES.Q)
-    private void processImage(Bitmap b) {
-        displayBitmapWithBorders(b);
-        FiberCounter fc = new FiberCounter(b, getApplicationContext());
-        imageList = fc.start();
+    private void displayResult(AnalysisViewModel.Analysis analysis) {
+        // the model releases the counter of the result shown so far
+        if (carousel != null) carousel.close();
+        carousel = null;
+        if (analysis == null) return;
+        if (analysis.error != null) {
+            Toast.makeText(getApplicationContext(), "Failed to analyze the photo.", Toast.LENGTH_SHORT).show();
+            Log.d(TAG, "Failed to analyze", analysis.error);
+            return;
+        }
+        FiberCounter.Count c = analysis.count;
+
+        // the result images are rendered one tap ahead instead of all at once
+        carousel = new ResultCarousel(analysis.counter, imageView, ResultCarousel.defaultBudget());
+        carousel.showCurrent(this::displayBitmapWithBorders);
 
-        FiberCounter.Count c = fc.getCount();
         if (selectedOrientation.equals("horizontal")) {
             tvWarps.setText(c.vertical + "");
             tvWefts.setText(c.horizontal + "");
@@ -283,6 +305,10 @@ public class MainActivity extends AppCompatActivity {
             tvWefts.setText(c.vertical + "");
             displayClassification(c.horizontal, c.vertical);
         }
+        if (c.isUnreliable()) {
+            Log.d(TAG, "Low confidence: " + c.getConfidence());
+            Toast.makeText(getApplicationContext(), "The threads were hard to count. Please retake the photo.", Toast.LENGTH_LONG).show();
+        }
         displayMenu(false);
     }
 
@@ -377,6 +403,24 @@ public class MainActivity extends AppCompatActivity {
         return file.delete();
     }
 
+    /**
+     * Lets the user choose how the counting engine of the next photos is chosen.
+     */
+    private void displayEngineChoice() {
+        EngineSelector.Profile[] profiles = EngineSelector.Profile.values();
+        EngineSelector.Profile current = analysisViewModel.getEngineProfile();
+        // the last choice counts with the default engine
+        int checked = (current == null) ? profiles.length : current.ordinal();
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_engine)
+                .setSingleChoiceItems(R.array.engine_profile_array, checked, (dialog, which) -> {
+                    analysisViewModel.setEngineProfile(which < profiles.length ? profiles[which] : null);
+                    dialog.dismiss();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
     /**
      * Displays the disclaimer.
      * @param required
@@ -0,0 +1,65 @@
+package com.asu.hiblatek;
+
+import org.opencv.core.Mat;
+
+/**
+ * Exposes the rows or the columns of a {@link Mat} as a {@link LineSource}.
+ * Every scanline is copied with a single {@code Mat.get} call.
+ *
+ * @author Kirk M. Hilario
+ */
+class MatLineSource implements LineSource {
+    private final Mat image;
+    private final boolean columns;
+
+    private MatLineSource(Mat image, boolean columns) {
+        this.image = image;
+        this.columns = columns;
+    }
+
+    /**
+     * Creates a source that reads the rows of the image.
+     * @param image The image to read.
+     * @return      The row source.
+     */
+    static MatLineSource rows(Mat image) {
+        return new MatLineSource(image, false);
+    }
+
+    /**
+     * Creates a source that reads the columns of the image.
+     * @param image The image to read.
+     * @return      The column source.
+     */
+    static MatLineSource columns(Mat image) {
+        return new MatLineSource(image, true);
+    }
+
+    @Override
+    public int lineCount() {
+        return columns ? image.cols() : image.rows();
+    }
+
+    @Override
+    public int lineLength() {
+        return columns ? image.rows() : image.cols();
+    }
+
+    @Override
+    public int stride() {
+        return image.channels();
+    }
+
+    @Override
+    public void read(int line, byte[] buffer) {
+        if (columns) {
+            // the gather over the column stride is done on the native side
+            Mat column = image.col(line);
+            column.get(0, 0, buffer);
+            column.release();
+        }
+        else {
+            image.get(line, 0, buffer);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.asu.hiblatek;
+
+import android.util.Log;
+
+import org.opencv.core.Mat;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Owns the temporary Mats of one analysis and frees their native memory
+ * when it is closed, whether the analysis succeeded, failed or was
+ * cancelled.
+ * <p>
+ * Mats are created with {@link #newMat()} or handed over with
+ * {@link #track(Mat)}, and may be freed early with {@link #release(Mat)}.
+ * The scope samples the native bytes held by its live Mats whenever a
+ * stage begins, a Mat is released or the scope is closed, and keeps the
+ * peak of every stage.
+ * <p>
+ * In debug mode the scope remembers where every Mat was created, and
+ * {@link #close()} logs the Mats that were still live, since their owner
+ * forgot to release them.
+ *
+ * @author Kirk M. Hilario
+ */
+class MatScope implements AutoCloseable {
+    private static final String TAG = "MatScope";
+    private final boolean debug;
+    /**
+     * The live Mats; in debug mode, with where they were created.
+     */
+    private final IdentityHashMap<Mat, Throwable> live = new IdentityHashMap<>();
+    private final Map<String, Long> peakBytes = new LinkedHashMap<>();
+    private String stage = "";
+    private long peak = 0;
+    private int leaks = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a scope.
+     * @param debug {@code true} to report the Mats not released by their owner.
+     */
+    MatScope(boolean debug) {
+        this.debug = debug;
+    }
+
+    /**
+     * Creates an empty Mat owned by the scope.
+     * @return the new Mat
+     */
+    Mat newMat() {
+        return track(new Mat());
+    }
+
+    /**
+     * Creates a Mat owned by the scope.
+     * @param rows  Number of rows.
+     * @param cols  Number of columns.
+     * @param type  OpenCV type, such as {@code CvType.CV_8UC1}.
+     * @return      The new Mat; its content is undefined.
+     */
+    Mat newMat(int rows, int cols, int type) {
+        return track(new Mat(rows, cols, type));
+    }
+
+    /**
+     * Hands a Mat over to the scope.
+     * @param mat   The Mat, which the scope will release.
+     * @return      The same Mat.
+     */
+    Mat track(Mat mat) {
+        if (closed)
+            throw new IllegalStateException("the scope is closed");
+        live.put(mat, debug ? new Throwable("created during " + stage) : null);
+        return mat;
+    }
+
+    /**
+     * Releases a Mat owned by the scope before the scope is closed.
+     * @param mat   A Mat created or tracked by this scope.
+     */
+    void release(Mat mat) {
+        if (!live.containsKey(mat))
+            throw new IllegalArgumentException("the Mat is not owned by this scope");
+        sample();
+        live.remove(mat);
+        mat.release();
+    }
+
+    /**
+     * Starts a new stage. The peak of the previous stage is recorded.
+     * @param stage Name of the stage.
+     */
+    void enter(String stage) {
+        sample();
+        record();
+        this.stage = stage;
+        this.peak = liveBytes();
+    }
+
+    /**
+     * Records the native bytes currently held, for the peak of the stage.
+     */
+    void sample() {
+        peak = Math.max(peak, liveBytes());
+    }
+
+    /**
+     * Returns the most native bytes held during every stage so far, in
+     * the order the stages began.
+     * @return the peak bytes by stage name
+     */
+    Map<String, Long> getPeakBytes() {
+        Map<String, Long> peaks = new LinkedHashMap<>(peakBytes);
+        if (!closed)
+            peaks.put(stage, Math.max(peak, liveBytes()));
+        return peaks;
+    }
+
+    /**
+     * Returns the number of Mats that were still live when the scope was
+     * closed; only counted in debug mode.
+     * @return the number of leaked Mats
+     */
+    int getLeakCount() {
+        return leaks;
+    }
+
+    /**
+     * Releases every Mat still owned by the scope.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        sample();
+        record();
+        for (Map.Entry<Mat, Throwable> entry : live.entrySet()) {
+            if (debug) {
+                leaks++;
+                Log.w(TAG, "Mat of " + bytes(entry.getKey()) + " bytes was not released",
+                        entry.getValue());
+            }
+            entry.getKey().release();
+        }
+        live.clear();
+        closed = true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("MatScope{");
+        for (Map.Entry<String, Long> entry : getPeakBytes().entrySet()) {
+            if (sb.length() > 9)
+                sb.append(", ");
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append(" bytes");
+        }
+        return sb.append('}').toString();
+    }
+
+    private void record() {
+        if (!stage.isEmpty() || peak > 0) {
+            Long previous = peakBytes.get(stage);
+            peakBytes.put(stage, previous == null ? peak : Math.max(previous, peak));
+        }
+    }
+
+    private long liveBytes() {
+        long bytes = 0;
+        for (Mat mat : live.keySet())
+            bytes += bytes(mat);
+        return bytes;
+    }
+
+    private static long bytes(Mat mat) {
+        return mat.total() * mat.elemSize();
+    }
+}
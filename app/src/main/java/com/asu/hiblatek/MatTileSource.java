@@ -0,0 +1,43 @@
+package com.asu.hiblatek;
+
+import org.opencv.core.Mat;
+
+/**
+ * Exposes a {@link Mat} as a {@link TileSource}. Every tile is copied with
+ * a single {@code Mat.get} call on a submat.
+ *
+ * @author Kirk M. Hilario
+ */
+class MatTileSource implements TileSource {
+    private final Mat image;
+
+    /**
+     * Creates a source over the image.
+     * @param image The image to read.
+     */
+    MatTileSource(Mat image) {
+        this.image = image;
+    }
+
+    @Override
+    public int width() {
+        return image.cols();
+    }
+
+    @Override
+    public int height() {
+        return image.rows();
+    }
+
+    @Override
+    public int stride() {
+        return image.channels();
+    }
+
+    @Override
+    public void read(int x, int y, int width, int height, byte[] buffer) {
+        Mat tile = image.submat(y, y + height, x, x + width);
+        tile.get(0, 0, buffer);
+        tile.release();
+    }
+}
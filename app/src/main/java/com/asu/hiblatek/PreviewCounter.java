@@ -0,0 +1,134 @@
+package com.asu.hiblatek;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A reduced {@link FiberCounter} pipeline for low-resolution preview frames.
+ * <p>
+ * Every column and every row of the luminance plane is thresholded and
+ * opened with {@link LineOpening}, and only the number of white pixels of
+ * each opened line is kept. Those numbers are the projection profiles of
+ * the two masks, whose peaks are counted by {@link ProjectionProfileCounter},
+ * so no mask is ever stored and nothing is annotated. A plane held by a
+ * buffer is read one line at a time, so the frame is never copied whole.
+ * <p>
+ * An instance holds scratch buffers and must not be shared between threads.
+ *
+ * @author Kirk M. Hilario
+ */
+class PreviewCounter {
+    /**
+     * Long side of the photos the full-resolution parameters are tuned for.
+     */
+    static final int CAPTURED_LENGTH = 4000;
+    /**
+     * Same parameters as {@link FiberCounter} at full resolution.
+     */
+    static final int KERNEL_LENGTH = 20;
+    static final int THRESHOLD = 128;
+    static final int PROFILE_WINDOW = 5;
+    private final int width;
+    private final int height;
+    private final LineOpening opening;
+    private final int window;
+    private final byte[] source;
+    private final byte[] line;
+    private final int[] verticalProfile;
+    private final int[] horizontalProfile;
+
+    /**
+     * Creates a counter for frames of the given size.
+     * @param width     Width of the frames in pixels.
+     * @param height    Height of the frames in pixels.
+     */
+    PreviewCounter(int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("empty frame: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        ResolutionPolicy policy = ResolutionPolicy.forSize(Math.max(width, height), CAPTURED_LENGTH, KERNEL_LENGTH);
+        this.opening = new LineOpening(policy.scaleLength(KERNEL_LENGTH), THRESHOLD);
+        this.window = policy.scaleLength(PROFILE_WINDOW);
+        this.source = new byte[Math.max(width, height)];
+        this.line = new byte[Math.max(width, height)];
+        this.verticalProfile = new int[width];
+        this.horizontalProfile = new int[height];
+    }
+
+    /**
+     * Checks if the counter was made for frames of the given size.
+     * @param width     Width of the frame.
+     * @param height    Height of the frame.
+     * @return          {@code true} if the frame can be counted
+     */
+    boolean fits(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    /**
+     * Counts the vertical and horizontal threads of a frame.
+     * @param luma      The luminance plane, one byte per pixel.
+     * @param rowStride Distance between the first pixels of two rows.
+     * @return          The count, in the orientation of the frame.
+     */
+    FiberCounter.Count count(byte[] luma, int rowStride) {
+        return count(ByteBuffer.wrap(luma), rowStride);
+    }
+
+    /**
+     * Counts the vertical and horizontal threads of a frame held by a
+     * buffer, such as the Y plane of a YUV {@code ImageProxy}. The plane is
+     * read from index zero; its position is left unchanged.
+     * @param plane     The luminance plane, one byte per pixel.
+     * @param rowStride Distance between the first pixels of two rows.
+     * @return          The count, in the orientation of the frame.
+     */
+    FiberCounter.Count count(ByteBuffer plane, int rowStride) {
+        checkPlane(plane.limit(), width, height, rowStride);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0, i = x; y < height; y++, i += rowStride)
+                source[y] = plane.get(i);
+            opening.open(source, 0, 1, height, line, 0, 1);
+            verticalProfile[x] = countWhite(line, height);
+        }
+        ByteBuffer rows = plane.duplicate();
+        for (int y = 0; y < height; y++) {
+            rows.position(y * rowStride);
+            rows.get(source, 0, width);
+            opening.open(source, 0, 1, width, line, 0, 1);
+            horizontalProfile[y] = countWhite(line, width);
+        }
+
+        FiberCounter.Count count = new FiberCounter.Count();
+        count.vertical = ProjectionProfileCounter.countPeaks(
+                ProjectionProfileCounter.smooth(verticalProfile, window)).count();
+        count.horizontal = ProjectionProfileCounter.countPeaks(
+                ProjectionProfileCounter.smooth(horizontalProfile, window)).count();
+        return count;
+    }
+
+    /**
+     * Checks that a plane of the given size holds every pixel of a frame.
+     * The last row may be shorter than the row stride.
+     * @param size      Number of bytes of the plane.
+     * @param width     Width of the frame in pixels.
+     * @param height    Height of the frame in pixels.
+     * @param rowStride Distance between the first pixels of two rows.
+     */
+    static void checkPlane(long size, int width, int height, int rowStride) {
+        if (rowStride < width)
+            throw new IllegalArgumentException("row stride " + rowStride + " is shorter than the width " + width);
+        long needed = (long) (height - 1) * rowStride + width;
+        if (size < needed)
+            throw new IllegalArgumentException("plane of " + size + " bytes is too short for "
+                    + width + "x" + height + " at row stride " + rowStride + ": " + needed + " bytes needed");
+    }
+
+    private static int countWhite(byte[] line, int length) {
+        int white = 0;
+        for (int p = 0; p < length; p++) {
+            if (line[p] != ScanlineScanner.BLACK) white++;
+        }
+        return white;
+    }
+}
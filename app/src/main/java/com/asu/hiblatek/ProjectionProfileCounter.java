@@ -0,0 +1,155 @@
+package com.asu.hiblatek;
+
+import java.util.Arrays;
+
+/**
+ * Counts threads as peaks of the projection profile of an opened mask.
+ * <p>
+ * The profile holds, for every position along the scanlines, the number
+ * of scanlines that are white at that position; for the vertical mask that
+ * is the column sums, for the horizontal mask the row sums. It is built
+ * from the run lists in one pass, smoothed with a box filter and every
+ * rise above a high level that follows a drop below a low level counts as
+ * one thread. A break in a thread only lowers its peak a little, so the
+ * count does not depend on which scanlines happened to be sampled.
+ *
+ * @author Kirk M. Hilario
+ */
+class ProjectionProfileCounter {
+    /**
+     * Fraction of the profile's range, above its floor, that starts a peak.
+     */
+    static final double RISE_LEVEL = 0.5;
+    /**
+     * Fraction of the profile's range, above its floor, that ends a peak.
+     */
+    static final double FALL_LEVEL = 0.25;
+    private final int window;
+
+    /**
+     * Holds the peaks found in a profile.
+     */
+    static class Result {
+        /**
+         * Position of the highest value of every peak.
+         */
+        final int[] peaks;
+
+        Result(int[] peaks) {
+            this.peaks = peaks;
+        }
+
+        /**
+         * Returns the number of peaks, i.e. threads.
+         * @return the number of peaks
+         */
+        int count() {
+            return peaks.length;
+        }
+    }
+
+    /**
+     * Creates a counter.
+     * @param window    Width of the box filter used to smooth the profile.
+     */
+    ProjectionProfileCounter(int window) {
+        if (window < 1)
+            throw new IllegalArgumentException("window must be at least 1: " + window);
+        this.window = window;
+    }
+
+    /**
+     * Counts the threads of a mask.
+     * @param mask  The opened mask.
+     * @return      The peaks of its smoothed profile.
+     */
+    Result count(RunLengthMask mask) {
+        return countPeaks(smooth(coverage(mask), window));
+    }
+
+    /**
+     * Returns how many scanlines are white at every position along the lines.
+     * @param mask  The mask to project.
+     * @return      The profile, one value per position.
+     */
+    static int[] coverage(RunLengthMask mask) {
+        int length = mask.lineLength();
+        int[] delta = new int[length + 1];
+        int[] runs = new int[2 * ScanlineScanner.maxRuns(length)];
+        for (int i = 0; i < mask.lineCount(); i++) {
+            int n = mask.copyRuns(i, runs);
+            for (int k = 0; k < n; k += 2) {
+                delta[runs[k]]++;
+                delta[runs[k + 1]]--;
+            }
+        }
+        int[] profile = new int[length];
+        int sum = 0;
+        for (int p = 0; p < length; p++) {
+            sum += delta[p];
+            profile[p] = sum;
+        }
+        return profile;
+    }
+
+    /**
+     * Smooths the profile with a centered box filter.
+     * @param profile   The raw profile.
+     * @param window    Width of the filter.
+     * @return          The smoothed profile.
+     */
+    static double[] smooth(int[] profile, int window) {
+        int n = profile.length;
+        long[] prefix = new long[n + 1];
+        for (int p = 0; p < n; p++)
+            prefix[p + 1] = prefix[p] + profile[p];
+        double[] smoothed = new double[n];
+        int half = window / 2;
+        for (int p = 0; p < n; p++) {
+            int lo = Math.max(0, p - half);
+            int hi = Math.min(n, p - half + window);
+            smoothed[p] = (prefix[hi] - prefix[lo]) / (double) (hi - lo);
+        }
+        return smoothed;
+    }
+
+    /**
+     * Finds the peaks of a smoothed profile with hysteresis between
+     * {@link #FALL_LEVEL} and {@link #RISE_LEVEL} of its range. The floor and
+     * ceiling are the 10th and 98th percentiles so that a few outliers do
+     * not move the levels.
+     * @param profile   The smoothed profile.
+     * @return          The peaks.
+     */
+    static Result countPeaks(double[] profile) {
+        if (profile.length == 0) return new Result(new int[0]);
+        double[] sorted = profile.clone();
+        Arrays.sort(sorted);
+        double floor = sorted[(sorted.length - 1) / 10];
+        double ceiling = sorted[(sorted.length - 1) * 98 / 100];
+        double range = ceiling - floor;
+        if (range <= 0) return new Result(new int[0]);
+
+        double rise = floor + RISE_LEVEL * range;
+        double fall = floor + FALL_LEVEL * range;
+        int[] peaks = new int[profile.length / 2 + 1];
+        int count = 0;
+        boolean inPeak = false;
+        int top = 0;
+        for (int p = 0; p < profile.length; p++) {
+            if (!inPeak && profile[p] > rise) {
+                inPeak = true;
+                top = p;
+            }
+            else if (inPeak) {
+                if (profile[p] > profile[top]) top = p;
+                if (profile[p] < fall) {
+                    peaks[count++] = top;
+                    inPeak = false;
+                }
+            }
+        }
+        if (inPeak) peaks[count++] = top;
+        return new Result(Arrays.copyOf(peaks, count));
+    }
+}
@@ -0,0 +1,117 @@
+package com.asu.hiblatek;
+
+/**
+ * Chooses the resolution at which an image is analysed and scales the
+ * pixel-based parameters of the analysis to match.
+ * <p>
+ * The structuring elements and margins of {@link FiberCounter} are tuned
+ * in pixels of the captured image. When the threads are much wider than
+ * needed to tell them apart, the image is downsampled so that one thread
+ * pitch spans about {@code targetPixelsPerThread} pixels, and every length
+ * is multiplied by the same factor.
+ *
+ * @author Kirk M. Hilario
+ */
+class ResolutionPolicy {
+    /**
+     * Default number of pixels per thread pitch to analyse at.
+     */
+    static final int DEFAULT_PIXELS_PER_THREAD = 12;
+    /**
+     * Shortest structuring element the scaled analysis may use.
+     */
+    static final int MIN_KERNEL_LENGTH = 5;
+    private final double scale;
+
+    private ResolutionPolicy(double scale) {
+        this.scale = scale;
+    }
+
+    /**
+     * Returns a policy that keeps the captured resolution.
+     * @return the identity policy
+     */
+    static ResolutionPolicy fullResolution() {
+        return new ResolutionPolicy(1.0);
+    }
+
+    /**
+     * Chooses a scale from the estimated thread pitch.
+     * @param pitch                 Estimated thread pitch in captured pixels;
+     *                              zero or less if it could not be estimated.
+     * @param targetPixelsPerThread Pixels per pitch to analyse at.
+     * @param kernelLength          Structuring element length at full resolution.
+     * @return                      The policy for the image.
+     */
+    static ResolutionPolicy forPitch(double pitch, int targetPixelsPerThread, int kernelLength) {
+        if (pitch <= 0 || pitch <= targetPixelsPerThread)
+            return fullResolution();
+        double scale = targetPixelsPerThread / pitch;
+        return new ResolutionPolicy(Math.max(scale, minScale(kernelLength)));
+    }
+
+    /**
+     * Chooses the scale of an image that was delivered smaller than the
+     * captured photos the parameters are tuned for, such as a preview frame.
+     * @param analysedLength    Long side of the delivered image.
+     * @param capturedLength    Long side of a captured photo.
+     * @param kernelLength      Structuring element length at full resolution.
+     * @return                  The policy for the image.
+     */
+    static ResolutionPolicy forSize(int analysedLength, int capturedLength, int kernelLength) {
+        double scale = Math.min(1.0, analysedLength / (double) capturedLength);
+        return new ResolutionPolicy(Math.max(scale, minScale(kernelLength)));
+    }
+
+    /**
+     * Never shrink the structuring element below the point where the opening stops filtering.
+     */
+    private static double minScale(int kernelLength) {
+        return Math.min(1.0, MIN_KERNEL_LENGTH / (double) kernelLength);
+    }
+
+    /**
+     * Estimates the thread pitch from the number of threads crossed by a
+     * scanline of the given length.
+     * @param length    Length of the scanline in pixels.
+     * @param runs      Number of white runs found on the scanline.
+     * @return          The pitch in pixels, or {@code 0} if no run was found.
+     */
+    static double pitch(int length, int runs) {
+        return runs > 0 ? length / (double) runs : 0;
+    }
+
+    /**
+     * Returns the factor from captured to analysed pixels.
+     * @return the scale, at most {@code 1}
+     */
+    double getScale() {
+        return scale;
+    }
+
+    /**
+     * Checks if the image has to be resized before the analysis.
+     * @return {@code true} if the scale is below one
+     */
+    boolean isDownsampled() {
+        return scale < 1.0;
+    }
+
+    /**
+     * Converts a length in captured pixels to analysed pixels.
+     * @param length    The length at full resolution.
+     * @return          The scaled length, at least one pixel.
+     */
+    int scaleLength(int length) {
+        return Math.max(1, (int) Math.round(length * scale));
+    }
+
+    /**
+     * Converts a coordinate in analysed pixels back to captured pixels.
+     * @param coordinate    The coordinate in the analysed image.
+     * @return              The coordinate in the captured image.
+     */
+    double toCaptured(double coordinate) {
+        return coordinate / scale;
+    }
+}
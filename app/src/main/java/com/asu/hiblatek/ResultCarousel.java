@@ -0,0 +1,173 @@
+package com.asu.hiblatek;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cycles through the result images of a {@link FiberCounter}.
+ * <p>
+ * Images are rendered only when they are about to be shown. The image on
+ * screen is held by the carousel and the others are kept in an LRU cache
+ * bounded by a byte budget. Whenever an image is shown, the next one is
+ * rendered in the background so a tap rarely waits, unless the images
+ * are too large for the budget.
+ *
+ * @author Kirk M. Hilario
+ */
+class ResultCarousel {
+    private static final FiberCounter.ResultView[] VIEWS = FiberCounter.ResultView.values();
+    private final FiberCounter counter;
+    private final ImageView imageView;
+    private final LruCache<FiberCounter.ResultView, Bitmap> cache;
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private int index = 0;
+    /**
+     * The image on screen and its view, held outside the cache.
+     */
+    private Bitmap shown = null;
+    private FiberCounter.ResultView shownView = null;
+    private volatile boolean oversized = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Receives a rendered image on the main thread.
+     */
+    interface OnRenderedListener {
+        void onRendered(Bitmap bitmap);
+    }
+
+    /**
+     * Creates a carousel over the results of a finished count.
+     * @param counter       The counter whose results are shown.
+     * @param imageView     The view showing the current result.
+     * @param budgetBytes   Maximum number of bytes held by cached bitmaps.
+     */
+    ResultCarousel(FiberCounter counter, ImageView imageView, int budgetBytes) {
+        this.counter = counter;
+        this.imageView = imageView;
+        this.cache = new LruCache<FiberCounter.ResultView, Bitmap>(budgetBytes) {
+            @Override
+            protected int sizeOf(FiberCounter.ResultView key, Bitmap value) {
+                return value.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns a cache budget of one eighth of the heap available to the app.
+     * @return the budget in bytes
+     */
+    static int defaultBudget() {
+        return (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * Shows the current result image through the listener, rendering it in
+     * the background if needed, then prefetches the next one.
+     * @param listener  Shows the image.
+     */
+    void showCurrent(OnRenderedListener listener) {
+        show(VIEWS[index], listener);
+    }
+
+    /**
+     * Shows the next result image, wrapping around after the last one.
+     */
+    void showNext() {
+        if (closed) return;
+        index = (index + 1) % VIEWS.length;
+        show(VIEWS[index], imageView::setImageBitmap);
+    }
+
+    /**
+     * Starts the background rendering of the image after the current one.
+     */
+    void prefetchNext() {
+        prefetch(VIEWS[(index + 1) % VIEWS.length]);
+    }
+
+    /**
+     * Stops rendering and drops every cached image. The counter may be
+     * released from then on.
+     */
+    void close() {
+        closed = true;
+        renderer.shutdownNow();
+        cache.evictAll();
+        shown = null;
+        shownView = null;
+    }
+
+    /**
+     * Hands the image of a view to the listener once it is rendered, unless
+     * the user tapped past the view in the meantime.
+     */
+    private void show(FiberCounter.ResultView view, OnRenderedListener listener) {
+        if (closed) return;
+        Bitmap ready = view == shownView ? shown : cache.get(view);
+        if (ready != null) {
+            display(view, ready, listener);
+            return;
+        }
+        renderer.execute(() -> {
+            Bitmap bmp = renderCached(view);
+            mainHandler.post(() -> {
+                // ignore results for a view the user already tapped past
+                if (closed || bmp == null || VIEWS[index] != view) return;
+                display(view, bmp, listener);
+            });
+        });
+    }
+
+    /**
+     * Keeps the image outside the cache while it is shown, so even an image
+     * larger than the budget is not rendered again, and returns the image
+     * shown before it to the cache.
+     */
+    private void display(FiberCounter.ResultView view, Bitmap bmp, OnRenderedListener listener) {
+        if (shown != null && shownView != view && shown.getByteCount() <= cache.maxSize())
+            cache.put(shownView, shown);
+        cache.remove(view);
+        shown = bmp;
+        shownView = view;
+        listener.onRendered(bmp);
+        prefetchNext();
+    }
+
+    private void prefetch(FiberCounter.ResultView view) {
+        // an image over the budget would be evicted as soon as it is cached
+        if (closed || oversized || view == shownView || cache.get(view) != null) return;
+        renderer.execute(() -> renderCached(view));
+    }
+
+    /**
+     * Renders the view unless it was cached in the meantime. Runs on the
+     * rendering thread only.
+     * @return the image, or {@code null} if the carousel was closed and its
+     *         counter released while the image was due
+     */
+    private Bitmap renderCached(FiberCounter.ResultView view) {
+        Bitmap bmp = cache.get(view);
+        if (bmp == null) {
+            try {
+                bmp = counter.render(view);
+            }
+            catch (IllegalStateException e) {
+                if (!closed) throw e;
+                return null;
+            }
+            if (bmp.getByteCount() > cache.maxSize())
+                oversized = true;
+            else
+                cache.put(view, bmp);
+        }
+        return bmp;
+    }
+}
@@ -0,0 +1,265 @@
+package com.asu.hiblatek;
+
+import java.util.Arrays;
+
+/**
+ * A binary image stored as the white runs of every scanline.
+ * <p>
+ * The mask is built in one pass over the rows or the columns of a
+ * thresholded image. Every run is kept as a pair of positions, the first
+ * white pixel and the pixel after the last one, so counting and validity
+ * checks cost O(runs) instead of O(pixels). A pixel is white when its
+ * first channel is {@link ScanlineScanner#WHITE}; anything else is black.
+ *
+ * @author Kirk M. Hilario
+ */
+class RunLengthMask implements LineSource {
+    private final int lineCount;
+    private final int lineLength;
+    private final boolean columns;
+    /**
+     * Index in {@link #runs} of the first run of every line; line
+     * {@code i} owns the pairs between {@code offsets[i]} and {@code offsets[i + 1]}.
+     */
+    private final int[] offsets;
+    /**
+     * Start (inclusive) and end (exclusive) of every run, line after line.
+     */
+    private final int[] runs;
+
+    private RunLengthMask(int lineCount, int lineLength, boolean columns, int[] offsets, int[] runs) {
+        this.lineCount = lineCount;
+        this.lineLength = lineLength;
+        this.columns = columns;
+        this.offsets = offsets;
+        this.runs = runs;
+    }
+
+    /**
+     * Encodes every scanline of the source.
+     * @param source    The thresholded scanlines.
+     * @param columns   {@code true} if the scanlines are the image's columns.
+     * @return          The encoded mask.
+     */
+    static RunLengthMask encode(LineSource source, boolean columns) {
+        int count = source.lineCount();
+        int length = source.lineLength();
+        int stride = source.stride();
+        byte[] line = new byte[length * stride];
+        int[] offsets = new int[count + 1];
+        int[] runs = new int[Math.max(16, count * 4)];
+        int size = 0;
+
+        for (int i = 0; i < count; i++) {
+            source.read(i, line);
+            offsets[i] = size;
+            int start = -1;
+            for (int p = 0, k = 0; p <= length; p++, k += stride) {
+                boolean white = p < length && (line[k] & 0xFF) == ScanlineScanner.WHITE;
+                if (white && start < 0) {
+                    start = p;
+                }
+                else if (!white && start >= 0) {
+                    if (size + 2 > runs.length)
+                        runs = Arrays.copyOf(runs, runs.length * 2);
+                    runs[size++] = start;
+                    runs[size++] = p;
+                    start = -1;
+                }
+            }
+        }
+        offsets[count] = size;
+        return new RunLengthMask(count, length, columns, offsets, Arrays.copyOf(runs, size));
+    }
+
+    /**
+     * Builds a mask one scanline at a time from runs that are already known.
+     */
+    static class Builder {
+        private final int lineLength;
+        private final boolean columns;
+        private int[] offsets = new int[17];
+        private int[] runs = new int[16];
+        private int lineCount = 0;
+        private int size = 0;
+
+        /**
+         * Creates a builder.
+         * @param lineLength    Number of pixels in every scanline.
+         * @param columns       {@code true} if the scanlines are the image's columns.
+         */
+        Builder(int lineLength, boolean columns) {
+            this.lineLength = lineLength;
+            this.columns = columns;
+        }
+
+        /**
+         * Appends the next scanline.
+         * @param lineRuns  Start (inclusive) and end (exclusive) of every run,
+         *                  in increasing order.
+         * @param length    Number of positions used in {@code lineRuns}.
+         * @return          This builder.
+         */
+        Builder addLine(int[] lineRuns, int length) {
+            if (lineCount + 2 > offsets.length)
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            if (size + length > runs.length)
+                runs = Arrays.copyOf(runs, Math.max(runs.length * 2, size + length));
+            System.arraycopy(lineRuns, 0, runs, size, length);
+            size += length;
+            offsets[++lineCount] = size;
+            return this;
+        }
+
+        /**
+         * Returns the mask of the scanlines added so far.
+         * @return the mask
+         */
+        RunLengthMask build() {
+            return new RunLengthMask(lineCount, lineLength, columns,
+                    Arrays.copyOf(offsets, lineCount + 1), Arrays.copyOf(runs, size));
+        }
+    }
+
+    /**
+     * Checks if the scanlines are the columns of the image.
+     * @return {@code true} for columns, {@code false} for rows
+     */
+    boolean isColumns() {
+        return columns;
+    }
+
+    /**
+     * Returns the number of runs in the specified scanline.
+     * @param line  Index of the scanline.
+     * @return      The number of white runs.
+     */
+    int runCount(int line) {
+        return (offsets[line + 1] - offsets[line]) / 2;
+    }
+
+    /**
+     * Returns the index of the first run of the specified scanline; the
+     * runs of line {@code i} are numbered from {@code firstRun(i)} up to
+     * {@code firstRun(i + 1)}, and {@code firstRun(lineCount())} is the
+     * total number of runs.
+     * @param line  Index of the scanline, up to {@link #lineCount()}.
+     * @return      The index of its first run.
+     */
+    int firstRun(int line) {
+        return offsets[line] / 2;
+    }
+
+    /**
+     * Returns the first pixel of a run.
+     * @param run   Index of the run.
+     * @return      Its start, inclusive.
+     */
+    int runStart(int run) {
+        return runs[2 * run];
+    }
+
+    /**
+     * Returns the pixel after the last one of a run.
+     * @param run   Index of the run.
+     * @return      Its end, exclusive.
+     */
+    int runEnd(int run) {
+        return runs[2 * run + 1];
+    }
+
+    /**
+     * Copies the runs of the specified scanline as start/end pairs.
+     * @param line  Index of the scanline.
+     * @param dst   Receives {@code 2 * runCount(line)} positions.
+     * @return      The number of positions copied.
+     */
+    int copyRuns(int line, int[] dst) {
+        int o = offsets[line];
+        int n = offsets[line + 1] - o;
+        System.arraycopy(runs, o, dst, 0, n);
+        return n;
+    }
+
+    /**
+     * Checks if the scanline has at least one black pixel.
+     * @param line  Index of the scanline.
+     * @return      {@code true} unless a single run covers the whole line
+     */
+    boolean hasBlackPixel(int line) {
+        int o = offsets[line];
+        int n = offsets[line + 1] - o;
+        return !(n == 2 && runs[o] == 0 && runs[o + 1] == lineLength);
+    }
+
+    /**
+     * Counts the white runs of the scanline between {@code from} (inclusive)
+     * and {@code to} (exclusive). A run that began before {@code from} is
+     * reported as starting at {@code from}.
+     * @param line      Index of the scanline.
+     * @param from      First pixel to inspect.
+     * @param to        Pixel after the last one to inspect.
+     * @param runStarts Receives the first pixel of every run; may be {@code null}.
+     * @return          The number of white runs.
+     */
+    int countWhiteRuns(int line, int from, int to, int[] runStarts) {
+        int count = 0;
+        for (int k = offsets[line], end = offsets[line + 1]; k < end; k += 2) {
+            int start = runs[k];
+            if (runs[k + 1] <= from) continue;
+            if (start >= to) break;
+            if (runStarts != null)
+                runStarts[count] = Math.max(start, from);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes held by the run lists.
+     * @return the size of the encoded mask in bytes
+     */
+    long byteCount() {
+        return 4L * (offsets.length + runs.length);
+    }
+
+    /**
+     * Decodes the mask into a single-channel, row-major image buffer.
+     * @return {@code rows * cols} values of {@code 0} or {@code 255}
+     */
+    byte[] toImage() {
+        byte[] image = new byte[lineCount * lineLength];
+        for (int i = 0; i < lineCount; i++) {
+            for (int k = offsets[i], end = offsets[i + 1]; k < end; k += 2) {
+                for (int p = runs[k]; p < runs[k + 1]; p++) {
+                    int index = columns ? p * lineCount + i : i * lineLength + p;
+                    image[index] = (byte) ScanlineScanner.WHITE;
+                }
+            }
+        }
+        return image;
+    }
+
+    @Override
+    public int lineCount() {
+        return lineCount;
+    }
+
+    @Override
+    public int lineLength() {
+        return lineLength;
+    }
+
+    @Override
+    public int stride() {
+        return 1;
+    }
+
+    @Override
+    public void read(int line, byte[] buffer) {
+        Arrays.fill(buffer, 0, lineLength, (byte) ScanlineScanner.BLACK);
+        for (int k = offsets[line], end = offsets[line + 1]; k < end; k += 2) {
+            Arrays.fill(buffer, runs[k], runs[k + 1], (byte) ScanlineScanner.WHITE);
+        }
+    }
+}
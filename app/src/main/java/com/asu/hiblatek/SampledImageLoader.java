@@ -0,0 +1,115 @@
+package com.asu.hiblatek;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes photos at no more than the resolution the analysis needs.
+ * <p>
+ * The image bounds are read first, without decoding any pixel. The
+ * decoder then subsamples by the smallest power of two that brings the
+ * decoded area under a pixel budget, so a 108MP photo is never held at
+ * full resolution.
+ *
+ * @author Kirk M. Hilario
+ */
+class SampledImageLoader {
+    /**
+     * Default pixel budget. At 12MP a frame 150 threads across still has
+     * more than {@link ResolutionPolicy#DEFAULT_PIXELS_PER_THREAD} pixels
+     * per thread, which is what the adaptive analysis downsamples to anyway.
+     */
+    static final int DEFAULT_MAX_PIXELS = 12_000_000;
+    private final ContentResolver resolver;
+    private final int maxPixels;
+
+    /**
+     * Creates a loader.
+     * @param resolver  Resolves the URIs of the photos.
+     * @param maxPixels Most pixels a decoded bitmap may have.
+     */
+    SampledImageLoader(ContentResolver resolver, int maxPixels) {
+        if (maxPixels < 1)
+            throw new IllegalArgumentException("maxPixels must be at least 1: " + maxPixels);
+        this.resolver = resolver;
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Decodes the whole photo.
+     * @param uri   The photo.
+     * @return      The subsampled bitmap.
+     * @throws IOException if the photo cannot be read
+     */
+    Bitmap load(Uri uri) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = open(uri)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            throw new IOException("Not a decodable image: " + uri);
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, maxPixels);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap;
+        try (InputStream in = open(uri)) {
+            bitmap = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (bitmap == null)
+            throw new IOException("Failed to decode " + uri);
+        return bitmap;
+    }
+
+    /**
+     * Decodes an encoded image held in memory, such as a JPEG delivered by
+     * {@code ImageCapture}, under a pixel budget.
+     * @param data      The encoded image.
+     * @param maxPixels Most pixels the decoded bitmap may have.
+     * @return          The subsampled bitmap.
+     * @throws IOException if the data cannot be decoded
+     */
+    static Bitmap decode(byte[] data, int maxPixels) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            throw new IOException("Not a decodable image");
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, maxPixels);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (bitmap == null)
+            throw new IOException("Failed to decode the image");
+        return bitmap;
+    }
+
+    /**
+     * Returns the smallest power of two that, used as {@code inSampleSize},
+     * decodes the area into at most {@code maxPixels} pixels.
+     * @param width     Width of the area in pixels.
+     * @param height    Height of the area in pixels.
+     * @param maxPixels Pixel budget.
+     * @return          The sample size.
+     */
+    static int sampleSize(int width, int height, long maxPixels) {
+        int size = 1;
+        while ((long) (width / size) * (height / size) > maxPixels)
+            size *= 2;
+        return size;
+    }
+
+    private InputStream open(Uri uri) throws IOException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null)
+            throw new IOException("Cannot open " + uri);
+        return in;
+    }
+}
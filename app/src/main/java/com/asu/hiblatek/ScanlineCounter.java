@@ -0,0 +1,222 @@
+package com.asu.hiblatek;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Counts the white runs of a set of sampled scanlines.
+ * <p>
+ * The sampled lines do not depend on each other, so with a parallelism
+ * above one they are split across a work-stealing pool. Every leaf task
+ * keeps its own scanline and transition buffers and writes into its own
+ * slots of the result, so the merged result is the same as a sequential
+ * scan regardless of how the work was scheduled. Counters with the same
+ * parallelism share one pool of that many workers, so no thread is started
+ * per call and no count runs on more threads than it asked for.
+ *
+ * @author Kirk M. Hilario
+ */
+class ScanlineCounter {
+    /**
+     * Smallest number of lines handled by one leaf task.
+     */
+    private static final int MIN_LINES_PER_TASK = 2;
+    /**
+     * Pools shared by the counters, by parallelism; their idle workers
+     * expire on their own.
+     */
+    private static final Map<Integer, ForkJoinPool> POOLS = new HashMap<>();
+    /**
+     * Number of threads used to scan the lines.
+     */
+    private final int parallelism;
+
+    /**
+     * Holds the counts of every sampled scanline, in sampling order.
+     */
+    static class Result {
+        /**
+         * Index of every sampled line.
+         */
+        final int[] lines;
+        /**
+         * Number of white runs of every sampled line, or {@code -1} if the
+         * line has no black pixel and was skipped.
+         */
+        final int[] counts;
+        /**
+         * Position of the first pixel of every run of every sampled line.
+         */
+        final int[][] runStarts;
+
+        Result(int[] lines) {
+            this.lines = lines;
+            this.counts = new int[lines.length];
+            this.runStarts = new int[lines.length][];
+        }
+
+        /**
+         * Checks if the sampled line at position {@code k} was counted.
+         * @param k Position in sampling order.
+         * @return  {@code true} if the line was counted
+         */
+        boolean isValid(int k) {
+            return counts[k] >= 0;
+        }
+
+        /**
+         * Returns the highest count among the valid lines.
+         * @return the maximum count, or zero if no line was valid
+         */
+        int max() {
+            int max = 0;
+            for (int c : counts) {
+                if (c > max) max = c;
+            }
+            return max;
+        }
+    }
+
+    /**
+     * Creates a counter that scans the lines on the calling thread.
+     */
+    ScanlineCounter() {
+        this(1);
+    }
+
+    /**
+     * Creates a counter that scans the lines with the given number of threads.
+     * The lines are split into about four tasks per thread, run by the
+     * pool shared by every counter with the same parallelism.
+     * @param parallelism   Number of threads; {@code 1} scans sequentially.
+     */
+    ScanlineCounter(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1: " + parallelism);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the shared pool with the given number of workers, creating it
+     * on first use.
+     */
+    private static ForkJoinPool pool(int parallelism) {
+        synchronized (POOLS) {
+            ForkJoinPool pool = POOLS.get(parallelism);
+            if (pool == null) {
+                pool = new ForkJoinPool(parallelism);
+                POOLS.put(parallelism, pool);
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Returns the sampled lines: every {@code increment}-th line starting
+     * at {@code margin} and stopping {@code margin} lines before the end.
+     * @param lineCount Total number of lines.
+     * @param margin    Lines skipped at both ends.
+     * @param increment Distance between two sampled lines.
+     * @return          The indices of the sampled lines.
+     */
+    static int[] sampleLines(int lineCount, int margin, int increment) {
+        int end = lineCount - margin;
+        if (end <= margin) return new int[0];
+        int[] lines = new int[(end - margin + increment - 1) / increment];
+        for (int k = 0, i = margin; k < lines.length; k++, i += increment) {
+            lines[k] = i;
+        }
+        return lines;
+    }
+
+    /**
+     * Counts the white runs of the sampled lines, starting at pixel {@code from}.
+     * Lines without any black pixel are skipped.
+     * @param source    The scanlines.
+     * @param lines     Indices of the lines to count.
+     * @param from      First pixel of every line to inspect.
+     * @return          The per-line counts and run positions.
+     */
+    Result count(LineSource source, int[] lines, int from) {
+        Result result = new Result(lines);
+        if (parallelism == 1 || lines.length < 2 * MIN_LINES_PER_TASK) {
+            scan(source, result, from, 0, lines.length);
+            return result;
+        }
+
+        int grain = Math.max(MIN_LINES_PER_TASK, lines.length / (parallelism * 4));
+        pool(parallelism).invoke(new ScanTask(source, result, from, 0, lines.length, grain));
+        return result;
+    }
+
+    /**
+     * Scans the sampled lines in {@code [lo, hi)} with a fresh pair of buffers.
+     * Run-length encoded sources are counted from their run lists directly.
+     */
+    private static void scan(LineSource source, Result result, int from, int lo, int hi) {
+        int length = source.lineLength();
+        int stride = source.stride();
+        RunLengthMask mask = source instanceof RunLengthMask ? (RunLengthMask) source : null;
+        byte[] line = mask == null ? new byte[length * stride] : null;
+        int[] runStarts = new int[ScanlineScanner.maxRuns(length)];
+
+        for (int k = lo; k < hi; k++) {
+            int index = result.lines[k];
+            int count;
+            if (mask != null) {
+                if (!mask.hasBlackPixel(index)) {
+                    result.counts[k] = -1;
+                    continue;
+                }
+                count = mask.countWhiteRuns(index, from, length, runStarts);
+            }
+            else {
+                source.read(index, line);
+                if (!ScanlineScanner.hasBlackPixel(line, length, stride)) {
+                    result.counts[k] = -1;
+                    continue;
+                }
+                count = ScanlineScanner.countWhiteRuns(line, from, length, stride, runStarts);
+            }
+            int[] starts = new int[count];
+            System.arraycopy(runStarts, 0, starts, 0, count);
+            result.counts[k] = count;
+            result.runStarts[k] = starts;
+        }
+    }
+
+    /**
+     * Splits the sampled lines in halves until they are small enough to scan.
+     */
+    private static class ScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final LineSource source;
+        private final Result result;
+        private final int from;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+
+        ScanTask(LineSource source, Result result, int from, int lo, int hi, int grain) {
+            this.source = source;
+            this.result = result;
+            this.from = from;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= grain) {
+                scan(source, result, from, lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new ScanTask(source, result, from, lo, mid, grain),
+                    new ScanTask(source, result, from, mid, hi, grain));
+        }
+    }
+}
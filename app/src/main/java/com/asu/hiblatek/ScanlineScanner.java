@@ -0,0 +1,101 @@
+package com.asu.hiblatek;
+
+/**
+ * Finds white runs on a single scanline that was copied out of a binary
+ * image in one bulk read.
+ * <p>
+ * The line is a plain {@code byte[]} holding interleaved channel values, so
+ * the pixel at position {@code p} is read from {@code line[p * stride]}.
+ * This keeps the per-pixel work in Java and avoids one JNI call per pixel.
+ *
+ * @author Kirk M. Hilario
+ */
+final class ScanlineScanner {
+    /**
+     * Value of a white pixel in a thresholded image.
+     */
+    static final int WHITE = 255;
+    /**
+     * Value of a black pixel in a thresholded image.
+     */
+    static final int BLACK = 0;
+
+    private ScanlineScanner() { }
+
+    /**
+     * Checks if the scanline has at least one black pixel.
+     * @param line      The scanline buffer.
+     * @param length    Number of pixels in the scanline.
+     * @param stride    Number of channels per pixel.
+     * @return          {@code true} if a black pixel was found
+     */
+    static boolean hasBlackPixel(byte[] line, int length, int stride) {
+        int end = length * stride;
+        for (int k = 0; k < end; k += stride) {
+            if ((line[k] & 0xFF) == BLACK)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts the white runs of the scanline between {@code from} (inclusive)
+     * and {@code to} (exclusive).
+     * @param line      The scanline buffer.
+     * @param from      First pixel to inspect.
+     * @param to        Pixel after the last one to inspect.
+     * @param stride    Number of channels per pixel.
+     * @param runStarts Receives the position of the first pixel of every run;
+     *                  may be {@code null} if the positions are not needed.
+     * @return          The number of white runs.
+     */
+    static int countWhiteRuns(byte[] line, int from, int to, int stride, int[] runStarts) {
+        int count = 0;
+        boolean wasLastWhite = false;
+        for (int p = from, k = from * stride; p < to; p++, k += stride) {
+            if ((line[k] & 0xFF) == WHITE) {
+                if (!wasLastWhite) {
+                    if (runStarts != null)
+                        runStarts[count] = p;
+                    count++;
+                    wasLastWhite = true;
+                }
+            }
+            else if (wasLastWhite) {
+                wasLastWhite = false;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the runs of pixels brighter than {@code threshold} on a scanline
+     * that has not been thresholded yet, matching {@code THRESH_BINARY}.
+     * @param line      The scanline buffer.
+     * @param length    Number of pixels in the scanline.
+     * @param stride    Number of channels per pixel.
+     * @param threshold Highest value that is still considered black.
+     * @return          The number of bright runs.
+     */
+    static int countRunsAbove(byte[] line, int length, int stride, int threshold) {
+        int count = 0;
+        boolean wasLastWhite = false;
+        for (int p = 0, k = 0; p < length; p++, k += stride) {
+            boolean white = (line[k] & 0xFF) > threshold;
+            if (white && !wasLastWhite)
+                count++;
+            wasLastWhite = white;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the size of the buffer needed to hold every run start of a
+     * scanline with the given number of pixels.
+     * @param length    Number of pixels in the scanline.
+     * @return          The maximum possible number of runs.
+     */
+    static int maxRuns(int length) {
+        return (length + 1) / 2;
+    }
+}
@@ -0,0 +1,185 @@
+package com.asu.hiblatek;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Counts threads from the dominant frequency of an intensity profile.
+ * <p>
+ * Woven fabric is periodic: averaged along its threads, a photo becomes a
+ * profile that rises on every thread and falls in every gap. The mean is
+ * removed, a Hann window limits leakage, and {@code Core.dft} takes the
+ * spectrum in O(n log n). The strongest bin between two threads and a
+ * pitch of {@link #MIN_PITCH} pixels is refined to a fraction of a bin by
+ * fitting a parabola to the logarithm of its power and its neighbours'.
+ * Nothing is thresholded or opened, so the count does not depend on the
+ * exposure, and the whole image is read once, by {@code Core.reduce}.
+ *
+ * @author Kirk M. Hilario
+ */
+class SpectralCounter {
+    /**
+     * Shortest thread pitch that is looked for, in pixels.
+     */
+    static final int MIN_PITCH = 3;
+
+    /**
+     * Holds the dominant period of a profile.
+     */
+    static class Result {
+        /**
+         * Distance between two threads in pixels.
+         */
+        final double pitch;
+        /**
+         * Positions of the brightest point of every thread.
+         */
+        final int[] threads;
+        /**
+         * Fraction of the power of the searched band held by the peak bin;
+         * close to {@code 1} for a clean weave.
+         */
+        final double strength;
+
+        Result(double pitch, int[] threads, double strength) {
+            this.pitch = pitch;
+            this.threads = threads;
+            this.strength = strength;
+        }
+
+        /**
+         * Returns the number of threads.
+         * @return the number of periods along the profile
+         */
+        int count() {
+            return threads.length;
+        }
+    }
+
+    /**
+     * Averages an image along one direction. Only the first channel is used.
+     * @param image     The image.
+     * @param vertical  {@code true} to average the columns, for the vertical
+     *                  threads; {@code false} to average the rows.
+     * @return          The profile as a 32-bit float row vector.
+     */
+    static Mat profile(Mat image, boolean vertical) {
+        Mat channel = image;
+        if (image.channels() > 1) {
+            channel = new Mat();
+            Core.extractChannel(image, channel, 0);
+        }
+        Mat profile = new Mat();
+        Core.reduce(channel, profile, vertical ? 0 : 1, Core.REDUCE_AVG, CvType.CV_32F);
+        if (channel != image)
+            channel.release();
+        if (!vertical) {
+            Mat row = profile.t();
+            profile.release();
+            profile = row;
+        }
+        return profile;
+    }
+
+    /**
+     * Finds the dominant period of a profile.
+     * @param profile   The profile as a row vector of 32-bit floats.
+     * @return          The period and the threads.
+     */
+    Result count(Mat profile) {
+        int length = profile.cols();
+        float[] values = new float[length];
+        profile.get(0, 0, values);
+        int padded = Core.getOptimalDFTSize(length);
+        Mat signal = new Mat(1, padded, CvType.CV_32F);
+        signal.put(0, 0, window(values, padded));
+        Mat spectrum = new Mat();
+        Core.dft(signal, spectrum, Core.DFT_COMPLEX_OUTPUT);
+        float[] complex = new float[2 * padded];
+        spectrum.get(0, 0, complex);
+        signal.release();
+        spectrum.release();
+        return fromSpectrum(complex, length, padded);
+    }
+
+    /**
+     * Removes the mean of a profile, applies a Hann window and pads it
+     * with zeros.
+     * @param values    The profile.
+     * @param padded    Length of the result, at least that of the profile.
+     * @return          The windowed signal.
+     */
+    static float[] window(float[] values, int padded) {
+        int n = values.length;
+        double mean = 0;
+        for (float v : values) mean += v;
+        mean /= n;
+        float[] signal = new float[padded];
+        for (int i = 0; i < n; i++) {
+            double hann = 0.5 - 0.5 * Math.cos(2 * Math.PI * i / Math.max(1, n - 1));
+            signal[i] = (float) ((values[i] - mean) * hann);
+        }
+        return signal;
+    }
+
+    /**
+     * Finds the dominant period in the spectrum of a windowed profile.
+     * @param complex   Real and imaginary part of every bin, interleaved,
+     *                  as produced with {@code DFT_COMPLEX_OUTPUT}.
+     * @param length    Length of the profile before padding.
+     * @param padded    Length of the transform.
+     * @return          The period and the threads.
+     */
+    static Result fromSpectrum(float[] complex, int length, int padded) {
+        int minBin = Math.max(1, (int) Math.ceil(2.0 * padded / length));
+        int maxBin = Math.min(padded / 2 - 1, padded / MIN_PITCH);
+        if (minBin > maxBin)
+            return new Result(0, new int[0], 0);
+
+        int peak = minBin;
+        double peakPower = -1;
+        double total = 0;
+        for (int k = minBin; k <= maxBin; k++) {
+            double power = power(complex, k);
+            total += power;
+            if (power > peakPower) {
+                peakPower = power;
+                peak = k;
+            }
+        }
+        if (peakPower <= 0)
+            return new Result(0, new int[0], 0);
+
+        double frequency = peak + interpolate(Math.log(power(complex, peak - 1) + 1e-12),
+                Math.log(peakPower + 1e-12), Math.log(power(complex, peak + 1) + 1e-12));
+        double pitch = padded / frequency;
+        int count = (int) Math.round(length / pitch);
+
+        // a thread is brightest where the phase of the fundamental is zero
+        double phase = Math.atan2(complex[2 * peak + 1], complex[2 * peak]);
+        double first = -phase / (2 * Math.PI) * pitch;
+        first -= Math.floor(first / pitch) * pitch;
+        int[] threads = new int[count];
+        for (int j = 0; j < count; j++)
+            threads[j] = (int) Math.min(length - 1, Math.round(first + j * pitch));
+        return new Result(pitch, threads, peakPower / total);
+    }
+
+    /**
+     * Returns the offset of the vertex of the parabola through three
+     * equally spaced values, relative to the middle one.
+     */
+    static double interpolate(double left, double middle, double right) {
+        double denominator = left - 2 * middle + right;
+        if (denominator >= 0)
+            return 0;
+        return Math.max(-0.5, Math.min(0.5, 0.5 * (left - right) / denominator));
+    }
+
+    private static double power(float[] complex, int k) {
+        double re = complex[2 * k];
+        double im = complex[2 * k + 1];
+        return re * re + im * im;
+    }
+}
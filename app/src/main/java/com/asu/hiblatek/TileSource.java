@@ -0,0 +1,37 @@
+package com.asu.hiblatek;
+
+/**
+ * An image that can be read one rectangle at a time, so that it never has
+ * to be copied whole.
+ *
+ * @author Kirk M. Hilario
+ */
+interface TileSource {
+    /**
+     * Returns the width of the image.
+     * @return the width in pixels
+     */
+    int width();
+
+    /**
+     * Returns the height of the image.
+     * @return the height in pixels
+     */
+    int height();
+
+    /**
+     * Returns the number of interleaved channels per pixel.
+     * @return the number of channels per pixel
+     */
+    int stride();
+
+    /**
+     * Copies a rectangle of the image, row after row, into the buffer.
+     * @param x         Left edge of the rectangle.
+     * @param y         Top edge of the rectangle.
+     * @param width     Width of the rectangle.
+     * @param height    Height of the rectangle.
+     * @param buffer    Receives {@code width * height * stride()} values.
+     */
+    void read(int x, int y, int width, int height, byte[] buffer);
+}
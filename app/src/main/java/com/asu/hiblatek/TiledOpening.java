@@ -0,0 +1,191 @@
+package com.asu.hiblatek;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Thresholds and opens an image tile by tile, straight into
+ * {@link RunLengthMask}s, so that no full-size intermediate image is ever
+ * allocated.
+ * <p>
+ * Every tile is read with a halo of one kernel length along the direction
+ * of the opening. An opened pixel only depends on the source pixels less
+ * than a kernel length away, so the core of each tile comes out exactly as
+ * it would from the whole image. The runs of a band of tiles are gathered
+ * per scanline and a run that touches a seam is joined with the run it
+ * continues, which makes the masks identical to those of
+ * {@link RunLengthMask#encode(LineSource, boolean)} over the untiled
+ * opening. Working memory is a few tiles, whatever the size of the image.
+ * <p>
+ * The operator stops with a {@link CancellationException} between two
+ * bands once the calling thread is interrupted. An instance holds scratch
+ * buffers and must not be shared between threads.
+ *
+ * @author Kirk M. Hilario
+ */
+class TiledOpening {
+    private final int kernel;
+    private final int tileSize;
+    private final LineOpening opening;
+    private byte[] src = new byte[0];
+    private byte[] dst = new byte[0];
+    private final Band band;
+
+    /**
+     * Creates a tiled opening operator.
+     * @param kernel    Length of the line kernel in pixels.
+     * @param threshold Highest value that is thresholded to black.
+     * @param tileSize  Side of the square tiles in pixels, without the halo.
+     */
+    TiledOpening(int kernel, int threshold, int tileSize) {
+        if (tileSize < 1)
+            throw new IllegalArgumentException("tileSize must be at least 1: " + tileSize);
+        this.kernel = kernel;
+        this.tileSize = tileSize;
+        this.opening = new LineOpening(kernel, threshold);
+        this.band = new Band(tileSize);
+    }
+
+    /**
+     * Isolates the vertical lines of the image: every column is opened
+     * with an N×1 kernel.
+     * @param source    The image.
+     * @return          The opened image encoded by rows.
+     */
+    RunLengthMask verticalLines(TileSource source) {
+        int width = source.width();
+        int height = source.height();
+        int stride = source.stride();
+        RunLengthMask.Builder mask = new RunLengthMask.Builder(width, false);
+
+        for (int y0 = 0; y0 < height; y0 += tileSize) {
+            int th = Math.min(tileSize, height - y0);
+            int top = Math.max(0, y0 - kernel);
+            int bottom = Math.min(height, y0 + th + kernel);
+            int rows = bottom - top;
+            checkCancelled();
+            band.reset(th);
+            for (int x0 = 0; x0 < width; x0 += tileSize) {
+                int tw = Math.min(tileSize, width - x0);
+                read(source, x0, top, tw, rows, stride);
+                for (int c = 0; c < tw; c++)
+                    opening.open(src, c * stride, tw * stride, rows, dst, c, tw);
+                for (int r = 0; r < th; r++)
+                    band.appendRuns(r, dst, (y0 - top + r) * tw, 1, tw, x0);
+            }
+            band.flush(mask);
+        }
+        return mask.build();
+    }
+
+    /**
+     * Isolates the horizontal lines of the image: every row is opened with
+     * a 1×N kernel.
+     * @param source    The image.
+     * @return          The opened image encoded by columns.
+     */
+    RunLengthMask horizontalLines(TileSource source) {
+        int width = source.width();
+        int height = source.height();
+        int stride = source.stride();
+        RunLengthMask.Builder mask = new RunLengthMask.Builder(height, true);
+
+        for (int x0 = 0; x0 < width; x0 += tileSize) {
+            int tw = Math.min(tileSize, width - x0);
+            int left = Math.max(0, x0 - kernel);
+            int right = Math.min(width, x0 + tw + kernel);
+            int cols = right - left;
+            checkCancelled();
+            band.reset(tw);
+            for (int y0 = 0; y0 < height; y0 += tileSize) {
+                int th = Math.min(tileSize, height - y0);
+                read(source, left, y0, cols, th, stride);
+                for (int r = 0; r < th; r++)
+                    opening.open(src, r * cols * stride, stride, cols, dst, r * cols, 1);
+                for (int c = 0; c < tw; c++)
+                    band.appendRuns(c, dst, x0 - left + c, cols, th, y0);
+            }
+            band.flush(mask);
+        }
+        return mask.build();
+    }
+
+    /**
+     * Returns the number of bytes held by the tile buffers, which only
+     * depends on the tile size, the kernel and the number of channels.
+     * @return the size of the tile buffers in bytes
+     */
+    long bufferBytes() {
+        return src.length + dst.length;
+    }
+
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted())
+            throw new CancellationException("analysis cancelled");
+    }
+
+    private void read(TileSource source, int x, int y, int w, int h, int stride) {
+        int n = w * h;
+        if (src.length < n * stride)
+            src = new byte[n * stride];
+        if (dst.length < n)
+            dst = new byte[n];
+        source.read(x, y, w, h, src);
+    }
+
+    /**
+     * The runs of the scanlines that cross one band of tiles.
+     */
+    private static class Band {
+        private final int[][] runs;
+        private final int[] sizes;
+        private int lines;
+
+        Band(int capacity) {
+            runs = new int[capacity][16];
+            sizes = new int[capacity];
+        }
+
+        void reset(int lines) {
+            this.lines = lines;
+            Arrays.fill(sizes, 0, lines, 0);
+        }
+
+        /**
+         * Appends the white runs of a stretch of opened pixels to a
+         * scanline, joining a run that starts where the last one ended.
+         */
+        void appendRuns(int line, byte[] pixels, int offset, int step, int length, int base) {
+            int start = -1;
+            for (int p = 0, k = offset; p <= length; p++, k += step) {
+                boolean white = p < length && (pixels[k] & 0xFF) == ScanlineScanner.WHITE;
+                if (white && start < 0) {
+                    start = p;
+                }
+                else if (!white && start >= 0) {
+                    append(line, base + start, base + p);
+                    start = -1;
+                }
+            }
+        }
+
+        private void append(int line, int start, int end) {
+            int[] r = runs[line];
+            int n = sizes[line];
+            if (n > 0 && r[n - 1] == start) {
+                r[n - 1] = end;
+                return;
+            }
+            if (n + 2 > r.length)
+                runs[line] = r = Arrays.copyOf(r, r.length * 2);
+            r[n] = start;
+            r[n + 1] = end;
+            sizes[line] = n + 2;
+        }
+
+        void flush(RunLengthMask.Builder mask) {
+            for (int i = 0; i < lines; i++)
+                mask.addLine(runs[i], sizes[i]);
+        }
+    }
+}
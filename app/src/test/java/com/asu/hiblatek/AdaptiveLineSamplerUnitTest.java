@@ -0,0 +1,134 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link AdaptiveLineSampler}.
+ */
+public class AdaptiveLineSamplerUnitTest {
+
+    /**
+     * Lines with {@code counts[i % counts.length]} evenly spaced white runs.
+     */
+    private static ScanlineCounterUnitTest.ArrayLineSource stripes(int lineCount, int length, int... counts) {
+        byte[][] lines = new byte[lineCount][length];
+        for (int i = 0; i < lineCount; i++) {
+            int pitch = length / counts[i % counts.length];
+            for (int p = 0; p < length; p++)
+                lines[i][p] = (p % pitch < pitch / 2) ? (byte) 255 : 0;
+        }
+        return new ScanlineCounterUnitTest.ArrayLineSource(lines);
+    }
+
+    @Test
+    public void bitReversedOrderVisitsEveryPositionOnce() {
+        int[] order = AdaptiveLineSampler.bitReversedOrder(11);
+        assertArrayEquals(new int[] {0, 8, 4, 2, 10, 6, 1, 9, 5, 3, 7}, order);
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++)
+            assertEquals(i, sorted[i]);
+        assertArrayEquals(new int[] {0}, AdaptiveLineSampler.bitReversedOrder(1));
+        assertEquals(0, AdaptiveLineSampler.bitReversedOrder(0).length);
+    }
+
+    @Test
+    public void agreeingLinesStopEarly() {
+        ScanlineCounterUnitTest.ArrayLineSource source = stripes(400, 300, 30);
+        ScanlineCounter.Result result = new AdaptiveLineSampler(AdaptiveLineSampler.DEFAULT_TOLERANCE, 1)
+                .count(source, 10, 5, 0);
+        assertEquals(AdaptiveLineSampler.MIN_LINES, result.lines.length);
+        assertEquals(30, result.max());
+        // the visited lines are spread over the image and returned in order
+        assertTrue(result.lines[0] < 100);
+        assertTrue(result.lines[result.lines.length - 1] > 300);
+        for (int k = 1; k < result.lines.length; k++)
+            assertTrue(result.lines[k - 1] < result.lines[k]);
+    }
+
+    @Test
+    public void disagreeingLinesAreSampledDensely() {
+        ScanlineCounterUnitTest.ArrayLineSource source = stripes(400, 300, 30, 20, 25);
+        ScanlineCounter.Result result = new AdaptiveLineSampler(AdaptiveLineSampler.DEFAULT_TOLERANCE, 1)
+                .count(source, 10, 5, 0);
+        assertArrayEquals(ScanlineCounter.sampleLines(400, 5, 5), result.lines);
+        assertEquals(30, result.max());
+    }
+
+    @Test
+    public void parallelismDoesNotChangeTheResult() {
+        ScanlineCounterUnitTest.ArrayLineSource source = stripes(400, 300, 30, 30, 29);
+        ScanlineCounter.Result sequential = new AdaptiveLineSampler(0.05, 1).count(source, 10, 5, 0);
+        ScanlineCounter.Result parallel = new AdaptiveLineSampler(0.05, 4).count(source, 10, 5, 0);
+        assertEquals(sequential.max(), parallel.max());
+        assertTrue(parallel.lines.length < ScanlineCounter.sampleLines(400, 5, 10).length);
+    }
+
+    @Test
+    public void cleanFabricNeedsFewerLines() {
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(800, 600).threads(30, 24).render();
+        ArrayTileSource image = new ArrayTileSource(sample.pixels, sample.width, sample.height, 1);
+        RunLengthMask vertical = new TiledOpening(20, 128, 128).verticalLines(image);
+        int increment = vertical.lineCount() / 20;
+        int[] fixed = ScanlineCounter.sampleLines(vertical.lineCount(), 10, increment);
+        ScanlineCounter.Result result = new AdaptiveLineSampler(AdaptiveLineSampler.DEFAULT_TOLERANCE, 1)
+                .count(vertical, increment, 10, 0);
+        assertEquals(new ScanlineCounter().count(vertical, fixed, 0).max(), result.max());
+        assertEquals(30, result.max());
+        assertTrue(result.lines.length < fixed.length / 2);
+    }
+
+    @Test
+    public void reportsTheFixedStrideMaximumOnGeneratedFabric() {
+        int visited = 0;
+        int sampled = 0;
+        for (long seed = 1; seed <= 16; seed++) {
+            WovenFabricGenerator.Sample sample = new WovenFabricGenerator(800, 600)
+                    .threads(24 + 2 * (int) (seed % 9), 18 + (int) (seed % 7))
+                    .rotation(0.2 * (seed % 8))
+                    .blur(1)
+                    .noise(4)
+                    .illumination(0.1)
+                    .seed(seed)
+                    .render();
+            ArrayTileSource image = new ArrayTileSource(sample.pixels, sample.width, sample.height, 1);
+            TiledOpening opening = new TiledOpening(20, 128, 128);
+            for (RunLengthMask mask : new RunLengthMask[] {opening.verticalLines(image), opening.horizontalLines(image)}) {
+                int increment = mask.lineCount() * 3 / 100;
+                int[] fixed = ScanlineCounter.sampleLines(mask.lineCount(), 10, increment);
+                ScanlineCounter.Result result = new AdaptiveLineSampler(AdaptiveLineSampler.DEFAULT_TOLERANCE, 2)
+                        .count(mask, increment, 10, 0);
+                // a single line one thread above the rest still sets the count
+                assertEquals("seed " + seed, new ScanlineCounter().count(mask, fixed, 0).max(), result.max());
+                visited += result.lines.length;
+                sampled += fixed.length;
+            }
+        }
+        assertTrue(visited < sampled * 3 / 4);
+    }
+
+    @Test
+    public void checksSkippedLinesThatCouldRaiseTheCount() {
+        // every line has 30 runs except one with 31, which the visit skips
+        byte[][] lines = new byte[400][300];
+        for (int i = 0; i < lines.length; i++) {
+            int runs = (i == 115) ? 31 : 30;
+            for (int r = 0; r < runs; r++)
+                lines[i][r * 9] = (byte) 255;
+        }
+        RunLengthMask mask = RunLengthMask.encode(new ScanlineCounterUnitTest.ArrayLineSource(lines), false);
+        ScanlineCounter.Result result = new AdaptiveLineSampler(AdaptiveLineSampler.DEFAULT_TOLERANCE, 1)
+                .count(mask, 10, 5, 0);
+        assertEquals(31, result.max());
+        assertTrue(result.lines.length < ScanlineCounter.sampleLines(400, 5, 10).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveTolerance() {
+        new AdaptiveLineSampler(0, 1);
+    }
+}
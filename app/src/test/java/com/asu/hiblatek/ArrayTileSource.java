@@ -0,0 +1,39 @@
+package com.asu.hiblatek;
+
+/**
+ * A row-major image held in a byte array, for tests.
+ */
+class ArrayTileSource implements TileSource {
+    final byte[] pixels;
+    final int width;
+    final int height;
+    final int stride;
+
+    ArrayTileSource(byte[] pixels, int width, int height, int stride) {
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.stride = stride;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public int stride() {
+        return stride;
+    }
+
+    @Override
+    public void read(int x, int y, int w, int h, byte[] buffer) {
+        for (int r = 0; r < h; r++)
+            System.arraycopy(pixels, ((y + r) * width + x) * stride, buffer, r * w * stride, w * stride);
+    }
+}
@@ -0,0 +1,82 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link BorderCrop}.
+ */
+public class BorderCropUnitTest {
+
+    /**
+     * An opaque RGBA image, black outside the given box and random but
+     * never black inside it.
+     */
+    private static ArrayTileSource framed(int width, int height, Rect content, long seed) {
+        Random random = new Random(seed);
+        byte[] pixels = new byte[width * height * 4];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = (y * width + x) * 4;
+                pixels[i + 3] = (byte) 255;
+                if (content.contains(new Point(x, y))) {
+                    pixels[i + random.nextInt(3)] = (byte) (2 + random.nextInt(254));
+                }
+            }
+        }
+        return new ArrayTileSource(pixels, width, height, 4);
+    }
+
+    @Test
+    public void findsTheContentBox() {
+        Random random = new Random(5);
+        for (int t = 0; t < 50; t++) {
+            int width = 1 + random.nextInt(120);
+            int height = 1 + random.nextInt(120);
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            Rect content = new Rect(x, y, 1 + random.nextInt(width - x), 1 + random.nextInt(height - y));
+            Rect found = BorderCrop.find(framed(width, height, content, t), BorderCrop.DEFAULT_THRESHOLD);
+            assertEquals(width + "x" + height, content, found);
+        }
+    }
+
+    @Test
+    public void keepsImagesWithoutBorder() {
+        Rect full = new Rect(0, 0, 40, 30);
+        assertEquals(full, BorderCrop.find(framed(40, 30, full, 1), BorderCrop.DEFAULT_THRESHOLD));
+    }
+
+    @Test
+    public void keepsBlackImagesWhole() {
+        ArrayTileSource black = framed(40, 30, new Rect(0, 0, 0, 0), 1);
+        assertEquals(new Rect(0, 0, 40, 30), BorderCrop.find(black, BorderCrop.DEFAULT_THRESHOLD));
+    }
+
+    @Test
+    public void ignoresDarkNoiseAndAlpha() {
+        // values at the threshold are black, even when the alpha channel is opaque
+        byte[] pixels = new byte[20 * 10 * 4];
+        for (int i = 0; i < pixels.length; i += 4) {
+            pixels[i] = 1;
+            pixels[i + 3] = (byte) 255;
+        }
+        pixels[(4 * 20 + 7) * 4 + 2] = 2;
+        Rect found = BorderCrop.find(new ArrayTileSource(pixels, 20, 10, 4), BorderCrop.DEFAULT_THRESHOLD);
+        assertEquals(new Rect(7, 4, 1, 1), found);
+    }
+
+    @Test
+    public void readsSingleChannelImages() {
+        byte[] pixels = new byte[30 * 30];
+        for (int y = 10; y < 25; y++)
+            for (int x = 3; x < 9; x++) pixels[y * 30 + x] = (byte) 200;
+        Rect found = BorderCrop.find(new ArrayTileSource(pixels, 30, 30, 1), BorderCrop.DEFAULT_THRESHOLD);
+        assertEquals(new Rect(3, 10, 6, 15), found);
+    }
+}
@@ -0,0 +1,98 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ComponentCounter}.
+ */
+public class ComponentCounterUnitTest {
+
+    /**
+     * Encodes a row-major 0/1 picture by rows.
+     */
+    private static RunLengthMask mask(String... rows) {
+        RunLengthMask.Builder builder = new RunLengthMask.Builder(rows[0].length(), false);
+        int[] runs = new int[rows[0].length() + 1];
+        for (String row : rows) {
+            int n = 0;
+            for (int p = 0; p < row.length(); p++) {
+                boolean white = row.charAt(p) == '#';
+                boolean before = p > 0 && row.charAt(p - 1) == '#';
+                if (white && !before) runs[n++] = p;
+                if (!white && before) runs[n++] = p;
+            }
+            if (row.endsWith("#")) runs[n++] = row.length();
+            builder.addLine(runs, n);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void countsLongComponentsOnly() {
+        RunLengthMask mask = mask(
+                "#..#....#.",
+                "#..#......",
+                "#...#...##",
+                "#...#.....",
+                "#....#....",
+                "#....#..#.");
+        ComponentCounter.Result result = new ComponentCounter(0.5, 0).count(mask);
+        // the speck at the right is too short; the leaning thread stays connected
+        assertEquals(2, result.count());
+        assertArrayEquals(new int[] {0, 4}, result.threads);
+        assertEquals(5, result.components);
+    }
+
+    @Test
+    public void bridgesShortBreaks() {
+        RunLengthMask mask = mask(
+                ".#...#.",
+                ".#...#.",
+                ".......",
+                ".#...#.",
+                ".#.....",
+                ".#.....",
+                ".#...#.");
+        ComponentCounter.Result broken = new ComponentCounter(0.5, 0).count(mask);
+        assertEquals(5, broken.components);
+        assertEquals(1, broken.count());
+        ComponentCounter.Result bridged = new ComponentCounter(0.5, 2).count(mask);
+        assertEquals(2, bridged.components);
+        assertEquals(2, bridged.count());
+    }
+
+    @Test
+    public void histogramBinsAreasByPowerOfTwo() {
+        RunLengthMask mask = mask(
+                "#.##.####",
+                "...#.....");
+        ComponentCounter.Result result = new ComponentCounter(1, 0).count(mask);
+        assertEquals(3, result.components);
+        assertEquals(1, result.sizeHistogram[0]);   // area 1
+        assertEquals(1, result.sizeHistogram[1]);   // area 3
+        assertEquals(1, result.sizeHistogram[2]);   // area 4
+    }
+
+    @Test
+    public void ignoresSpecksThatFoolScanlines() {
+        // noise that makes the scanline engine overcount this fabric
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(800, 600)
+                .threads(30, 24).blur(1).noise(8).illumination(0.1).seed(3).render();
+        ArrayTileSource image = new ArrayTileSource(sample.pixels, sample.width, sample.height, 1);
+        TiledOpening opening = new TiledOpening(20, 128, 128);
+        ComponentCounter counter = new ComponentCounter(ComponentCounter.DEFAULT_MIN_SPAN, 20);
+        assertEquals(sample.warp, counter.count(opening.verticalLines(image)).count());
+        assertEquals(sample.weft, counter.count(opening.horizontalLines(image)).count());
+    }
+
+    @Test
+    public void labelsLargeMasks() {
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(4000, 3000).threads(150, 110).render();
+        RunLengthMask mask = new TiledOpening(20, 128, 256)
+                .verticalLines(new ArrayTileSource(sample.pixels, sample.width, sample.height, 1));
+        // its speed is measured by CountingBenchmark.componentCount
+        assertEquals(150, new ComponentCounter(ComponentCounter.DEFAULT_MIN_SPAN, 20).count(mask).count());
+    }
+}
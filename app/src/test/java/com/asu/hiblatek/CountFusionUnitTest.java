@@ -0,0 +1,75 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link CountFusion} and {@link BurstCounter}.
+ */
+public class CountFusionUnitTest {
+
+    private static FiberCounter.Count count(int vertical, int horizontal) {
+        FiberCounter.Count count = new FiberCounter.Count();
+        count.vertical = vertical;
+        count.horizontal = horizontal;
+        return count;
+    }
+
+    @Test
+    public void medianIgnoresOutlierFrame() {
+        // the fourth frame is blurred and loses most threads
+        CountFusion.Estimate estimate = CountFusion.estimate(new int[] {42, 41, 42, 12, 43});
+        assertEquals(42, estimate.count());
+        assertEquals(1.0, estimate.mad, 1e-9);
+        assertEquals(12, estimate.min);
+        assertEquals(43, estimate.max);
+        // 20% trimmed from each end of five counts drops one at each end
+        assertEquals((41 + 42 + 42) / 3.0, estimate.trimmedMean, 1e-9);
+    }
+
+    @Test
+    public void averagesMiddlePairOfEvenBurst() {
+        CountFusion.Estimate estimate = CountFusion.estimate(new int[] {10, 12, 11, 13});
+        assertEquals(11.5, estimate.median, 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyBurst() {
+        CountFusion.estimate(new int[0]);
+    }
+
+    @Test
+    public void fusesBothDirections() {
+        List<FiberCounter.Count> counts = new ArrayList<>();
+        counts.add(count(40, 100));
+        counts.add(count(41, 102));
+        counts.add(count(40, 101));
+        CountFusion.FusedCount fused = CountFusion.fuse(counts);
+        assertEquals(40, fused.vertical.count());
+        assertEquals(101, fused.horizontal.count());
+        assertEquals(3, fused.horizontal.frames);
+    }
+
+    @Test
+    public void burstFramesAreCountedConcurrently() throws Exception {
+        int frames = 4;
+        long frameMillis = 200;
+        BurstCounter burst = new BurstCounter(frames);
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++) {
+            int vertical = 40 + i % 2;
+            burst.submit(() -> {
+                Thread.sleep(frameMillis);
+                return count(vertical, 100);
+            });
+        }
+        CountFusion.FusedCount fused = burst.await();
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertEquals(40.5, fused.vertical.median, 1e-9);
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 2 * frameMillis);
+    }
+}
@@ -0,0 +1,81 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link EngineSelector}, {@link CountingStrategies}
+ * and {@link ImageStatistics}.
+ */
+public class EngineSelectorUnitTest {
+    private static final ImageStatistics SHARP_12MP = new ImageStatistics(4000, 3000, 160, 30);
+    private static final ImageStatistics DULL_12MP = new ImageStatistics(4000, 3000, 50, 30);
+    private static final ImageStatistics SHARP_PREVIEW = new ImageStatistics(640, 480, 160, 8);
+
+    private static FiberCounter.Engine select(EngineSelector.Profile profile, double budget, ImageStatistics stats) {
+        return new EngineSelector(profile, budget).select(stats).engine();
+    }
+
+    @Test
+    public void everyEngineIsRegistered() {
+        for (FiberCounter.Engine engine : FiberCounter.Engine.values())
+            assertEquals(engine, CountingStrategies.forEngine(engine).engine());
+    }
+
+    @Test
+    public void costsGrowWithTheImage() {
+        for (CountingStrategy strategy : CountingStrategies.all())
+            assertTrue(strategy.estimateMillis(SHARP_PREVIEW) < strategy.estimateMillis(SHARP_12MP));
+    }
+
+    @Test
+    public void profilesTradeRobustnessForSpeed() {
+        assertEquals(FiberCounter.Engine.SPECTRUM, select(EngineSelector.Profile.FAST, 1000, SHARP_12MP));
+        assertEquals(FiberCounter.Engine.PROJECTION, select(EngineSelector.Profile.BALANCED, 1000, SHARP_12MP));
+        assertEquals(FiberCounter.Engine.COMPONENTS, select(EngineSelector.Profile.PRECISE, 1000, SHARP_12MP));
+    }
+
+    @Test
+    public void lowContrastAsksForMoreRobustness() {
+        assertEquals(FiberCounter.Engine.PROJECTION, select(EngineSelector.Profile.FAST, 1000, DULL_12MP));
+        assertEquals(FiberCounter.Engine.COMPONENTS, select(EngineSelector.Profile.BALANCED, 1000, DULL_12MP));
+    }
+
+    @Test
+    public void budgetLimitsTheChoice() {
+        double projection = CountingStrategies.forEngine(FiberCounter.Engine.PROJECTION).estimateMillis(SHARP_12MP);
+        assertEquals(FiberCounter.Engine.PROJECTION,
+                select(EngineSelector.Profile.PRECISE, projection + 0.1, SHARP_12MP));
+        assertEquals(FiberCounter.Engine.SPECTRUM, select(EngineSelector.Profile.PRECISE, 0.001, SHARP_12MP));
+        // the budget includes the opening, which the spectrum skips
+        double opening = CountingStrategies.openingMillis(SHARP_12MP);
+        assertEquals(FiberCounter.Engine.SPECTRUM, select(EngineSelector.Profile.PRECISE, opening, SHARP_12MP));
+    }
+
+    @Test
+    public void spectrumSkipsTheOpening() {
+        double spectrum = CountingStrategies.forEngine(FiberCounter.Engine.SPECTRUM).estimateMillis(SHARP_12MP);
+        for (CountingStrategy strategy : CountingStrategies.all()) {
+            if (strategy.engine() != FiberCounter.Engine.SPECTRUM)
+                assertTrue(spectrum < strategy.estimateMillis(SHARP_12MP));
+        }
+        assertFalse(CountingStrategies.forEngine(FiberCounter.Engine.SPECTRUM)
+                .accepts(new ImageStatistics(640, 480, 160, 3)));
+    }
+
+    @Test
+    public void measuresContrastAndPitch() {
+        // stripes 10 pixels apart, 4 bright pixels each, on a 40..200 range
+        byte[][] lines = new byte[50][100];
+        for (byte[] line : lines) {
+            for (int p = 0; p < line.length; p++)
+                line[p] = (byte) (p % 10 < 4 ? 200 : 40);
+        }
+        ScanlineCounterUnitTest.ArrayLineSource source = new ScanlineCounterUnitTest.ArrayLineSource(lines);
+        ImageStatistics stats = ImageStatistics.measure(source, source, 5, 128);
+        assertEquals(160, stats.contrast);
+        assertEquals(10, stats.pitch, 1e-9);
+        assertEquals(5, stats.scaled(0.5).pitch, 1e-9);
+    }
+}
@@ -0,0 +1,113 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LineCountStatistics}.
+ */
+public class LineCountStatisticsUnitTest {
+
+    private static LineCountStatistics of(int... counts) {
+        LineCountStatistics statistics = new LineCountStatistics();
+        for (int c : counts)
+            statistics.add(c);
+        return statistics;
+    }
+
+    @Test
+    public void emptyHasNoConfidence() {
+        LineCountStatistics statistics = new LineCountStatistics();
+        assertEquals(0, statistics.count());
+        assertEquals(0, statistics.median(), 1e-9);
+        assertEquals(0, statistics.confidence(30), 1e-9);
+    }
+
+    @Test
+    public void meanAndVarianceMatchTwoPasses() {
+        int[] counts = {28, 30, 31, 30, 29, 33, 30, 30, 27, 31};
+        LineCountStatistics statistics = of(counts);
+        double mean = Arrays.stream(counts).average().getAsDouble();
+        double squares = 0;
+        for (int c : counts)
+            squares += (c - mean) * (c - mean);
+        assertEquals(mean, statistics.mean(), 1e-9);
+        assertEquals(squares / (counts.length - 1), statistics.variance(), 1e-9);
+        assertEquals(27, statistics.min());
+        assertEquals(33, statistics.max());
+    }
+
+    @Test
+    public void medianIsExactForFewCounts() {
+        assertEquals(30, of(30).median(), 1e-9);
+        assertEquals(30.5, of(31, 30).median(), 1e-9);
+        assertEquals(30, of(40, 30, 20).median(), 1e-9);
+        assertEquals(30, of(40, 30, 20, 31, 29).median(), 1e-9);
+    }
+
+    @Test
+    public void estimatesTheMedianOfManyCounts() {
+        Random random = new Random(1);
+        int[] counts = new int[1001];
+        LineCountStatistics statistics = new LineCountStatistics();
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 30 + (int) Math.round(3 * random.nextGaussian());
+            statistics.add(counts[i]);
+        }
+        Arrays.sort(counts);
+        assertEquals(counts[counts.length / 2], statistics.median(), 0.5);
+    }
+
+    @Test
+    public void countsOutliersAgainstTheMedian() {
+        // two lines crossed a knot, one ran along a gap
+        LineCountStatistics statistics = of(30, 30, 31, 29, 30, 45, 30, 30, 44, 12);
+        assertEquals(0.3, statistics.outlierFraction(), 1e-9);
+        assertEquals(0, of(30, 30, 31, 29, 30, 32, 30).outlierFraction(), 1e-9);
+    }
+
+    @Test
+    public void confidenceFallsWithDisagreement() {
+        LineCountStatistics clean = of(30, 30, 30, 30, 30, 30, 30, 30);
+        assertEquals(1, clean.confidence(30), 1e-9);
+        LineCountStatistics noisy = of(30, 31, 29, 30, 33, 30, 30, 29);
+        assertTrue(noisy.confidence(33) < clean.confidence(30));
+        LineCountStatistics broken = of(30, 12, 45, 30, 20, 44, 30, 18);
+        assertTrue(broken.confidence(45) < FiberCounter.Count.LOW_CONFIDENCE);
+        assertTrue(noisy.confidence(33) > FiberCounter.Count.LOW_CONFIDENCE);
+    }
+
+    @Test
+    public void countWithoutStatisticsIsNotFlagged() {
+        FiberCounter.Count count = new FiberCounter.Count();
+        count.vertical = 30;
+        count.horizontal = 24;
+        assertTrue(Double.isNaN(count.getConfidence()));
+        assertFalse(count.isUnreliable());
+        count.verticalStatistics = of(30, 30, 30, 30, 30);
+        count.horizontalStatistics = of(24, 12, 40, 24, 30);
+        assertTrue(count.isUnreliable());
+    }
+
+    @Test
+    public void rotationSwapsStatisticsWithCounts() {
+        FiberCounter.Count count = new FiberCounter.Count();
+        count.vertical = 30;
+        count.horizontal = 24;
+        count.verticalStatistics = of(30, 30, 30, 30, 30);
+        count.horizontalStatistics = of(24, 24, 24, 24, 24);
+        count.rotate();
+        assertEquals(24, count.vertical);
+        assertEquals(30, count.horizontal);
+        assertEquals(1, count.getConfidence(), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeCounts() {
+        new LineCountStatistics().add(-1);
+    }
+}
@@ -0,0 +1,75 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link LineOpening}.
+ */
+public class LineOpeningUnitTest {
+
+    /**
+     * Straightforward threshold, erosion and dilation with the same window.
+     */
+    private static byte[] naiveOpen(byte[] src, int kernel, int threshold) {
+        int n = src.length;
+        int anchor = kernel / 2;
+        int[] bin = new int[n];
+        for (int i = 0; i < n; i++) bin[i] = (src[i] & 0xFF) > threshold ? 255 : 0;
+        int[] eroded = new int[n];
+        for (int i = 0; i < n; i++) {
+            int min = 255;
+            for (int j = i - anchor; j < i - anchor + kernel; j++)
+                if (j >= 0 && j < n) min = Math.min(min, bin[j]);
+            eroded[i] = min;
+        }
+        byte[] out = new byte[n];
+        for (int i = 0; i < n; i++) {
+            int max = 0;
+            for (int j = i - anchor; j < i - anchor + kernel; j++)
+                if (j >= 0 && j < n) max = Math.max(max, eroded[j]);
+            out[i] = (byte) max;
+        }
+        return out;
+    }
+
+    @Test
+    public void matchesNaiveOpening() {
+        Random random = new Random(3);
+        for (int kernel : new int[] {1, 2, 5, 10, 20, 33}) {
+            for (int n : new int[] {1, 7, 64, 257}) {
+                byte[] src = new byte[n];
+                int run = 0;
+                byte value = 0;
+                for (int i = 0; i < n; i++) {
+                    // runs of random length keep some of them longer than the kernel
+                    if (run-- == 0) {
+                        value = (byte) random.nextInt(256);
+                        run = random.nextInt(2 * kernel + 1);
+                    }
+                    src[i] = value;
+                }
+                byte[] dst = new byte[n];
+                new LineOpening(kernel, 128).open(src, 0, 1, n, dst, 0, 1);
+                assertArrayEquals("kernel=" + kernel + " n=" + n, naiveOpen(src, kernel, 128), dst);
+            }
+        }
+    }
+
+    @Test
+    public void readsAndWritesWithStrides() {
+        // two interleaved RGBA pixels per position; only the first channel matters
+        byte[] src = new byte[4 * 30];
+        for (int p = 10; p < 25; p++) src[4 * p] = (byte) 200;
+        byte[] dst = new byte[2 * 30];
+        new LineOpening(10, 128).open(src, 0, 4, 30, dst, 1, 2);
+        for (int p = 0; p < 30; p++) {
+            assertEquals(0, dst[2 * p]);
+            // like OpenCV, an even kernel shifts the opened run by one pixel
+            assertEquals(p >= 11 && p <= 25 ? (byte) 255 : 0, dst[2 * p + 1]);
+        }
+    }
+}
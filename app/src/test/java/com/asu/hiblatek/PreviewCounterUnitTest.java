@@ -0,0 +1,74 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PreviewCounter}.
+ */
+public class PreviewCounterUnitTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    /**
+     * Draws a woven-looking frame: bright vertical threads every
+     * {@code vPitch} pixels and horizontal ones every {@code hPitch}.
+     */
+    private static byte[] grid(int rowStride, int vPitch, int hPitch) {
+        byte[] luma = new byte[rowStride * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                boolean thread = x % vPitch < vPitch / 2 || y % hPitch < hPitch / 2;
+                luma[y * rowStride + x] = (byte) (thread ? 220 : 30);
+            }
+        }
+        return luma;
+    }
+
+    @Test
+    public void countsThreadsOfAFrame() {
+        PreviewCounter counter = new PreviewCounter(WIDTH, HEIGHT);
+        FiberCounter.Count count = counter.count(grid(WIDTH, 16, 24), WIDTH);
+        assertEquals(WIDTH / 16, count.vertical);
+        assertEquals(HEIGHT / 24, count.horizontal);
+    }
+
+    @Test
+    public void honoursRowStride() {
+        PreviewCounter counter = new PreviewCounter(WIDTH, HEIGHT);
+        FiberCounter.Count padded = counter.count(grid(WIDTH + 64, 16, 24), WIDTH + 64);
+        FiberCounter.Count tight = counter.count(grid(WIDTH, 16, 24), WIDTH);
+        assertEquals(tight.vertical, padded.vertical);
+        assertEquals(tight.horizontal, padded.horizontal);
+    }
+
+    @Test
+    public void fitsOnlyItsFrameSize() {
+        PreviewCounter counter = new PreviewCounter(WIDTH, HEIGHT);
+        assertTrue(counter.fits(WIDTH, HEIGHT));
+        assertFalse(counter.fits(HEIGHT, WIDTH));
+    }
+
+    @Test
+    public void countsAPlaneInPlace() {
+        int rowStride = WIDTH + 64;
+        byte[] luma = grid(rowStride, 16, 24);
+        // the last row of a camera plane stops at the width
+        ByteBuffer plane = ByteBuffer.allocateDirect((HEIGHT - 1) * rowStride + WIDTH);
+        plane.put(luma, 0, plane.capacity());
+        PreviewCounter counter = new PreviewCounter(WIDTH, HEIGHT);
+        FiberCounter.Count count = counter.count(plane, rowStride);
+        assertEquals(WIDTH / 16, count.vertical);
+        assertEquals(HEIGHT / 24, count.horizontal);
+        assertEquals(plane.capacity(), plane.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAShortPlane() {
+        ByteBuffer plane = ByteBuffer.allocateDirect((HEIGHT - 1) * WIDTH + WIDTH - 1);
+        new PreviewCounter(WIDTH, HEIGHT).count(plane, WIDTH);
+    }
+}
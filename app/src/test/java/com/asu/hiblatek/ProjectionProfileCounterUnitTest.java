@@ -0,0 +1,53 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ProjectionProfileCounter}.
+ */
+public class ProjectionProfileCounterUnitTest {
+
+    /**
+     * Rows crossing {@code threads} vertical stripes; each stripe pixel is
+     * dropped with the given probability to simulate breaks and noise.
+     */
+    private static RunLengthMask stripes(int threads, int pitch, int rows, double breaks, long seed) {
+        Random random = new Random(seed);
+        byte[][] lines = new byte[rows][threads * pitch];
+        for (byte[] line : lines) {
+            for (int t = 0; t < threads; t++) {
+                for (int p = t * pitch + pitch / 4; p < t * pitch + 3 * pitch / 4; p++) {
+                    if (random.nextDouble() >= breaks) line[p] = (byte) 255;
+                }
+            }
+        }
+        return RunLengthMask.encode(new ScanlineCounterUnitTest.ArrayLineSource(lines), false);
+    }
+
+    @Test
+    public void coverageSumsRunsPerPosition() {
+        byte[][] lines = {{(byte) 255, 0, (byte) 255}, {(byte) 255, (byte) 255, 0}};
+        RunLengthMask mask = RunLengthMask.encode(new ScanlineCounterUnitTest.ArrayLineSource(lines), false);
+        assertArrayEquals(new int[] {2, 1, 1}, ProjectionProfileCounter.coverage(mask));
+    }
+
+    @Test
+    public void countsCleanStripes() {
+        assertEquals(37, new ProjectionProfileCounter(3).count(stripes(37, 16, 50, 0, 1)).count());
+    }
+
+    @Test
+    public void countIsRobustToBrokenThreads() {
+        // a third of every thread is missing, which fools single scanlines
+        assertEquals(37, new ProjectionProfileCounter(3).count(stripes(37, 16, 200, 0.33, 2)).count());
+    }
+
+    @Test
+    public void flatProfileHasNoPeaks() {
+        assertEquals(0, ProjectionProfileCounter.countPeaks(new double[] {4, 4, 4, 4}).count());
+    }
+}
@@ -0,0 +1,47 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ResolutionPolicy}.
+ */
+public class ResolutionPolicyUnitTest {
+
+    @Test
+    public void keepsResolutionForFineThreads() {
+        assertFalse(ResolutionPolicy.forPitch(10, 12, 20).isDownsampled());
+        assertFalse(ResolutionPolicy.forPitch(0, 12, 20).isDownsampled());
+    }
+
+    @Test
+    public void scalesLengthsWithPitch() {
+        ResolutionPolicy policy = ResolutionPolicy.forPitch(48, 12, 20);
+        assertEquals(0.25, policy.getScale(), 1e-9);
+        assertEquals(5, policy.scaleLength(20));
+        assertEquals(3, policy.scaleLength(10));
+        assertEquals(40.0, policy.toCaptured(10), 1e-9);
+    }
+
+    @Test
+    public void neverShrinksKernelBelowMinimum() {
+        ResolutionPolicy policy = ResolutionPolicy.forPitch(400, 12, 20);
+        assertEquals(ResolutionPolicy.MIN_KERNEL_LENGTH, policy.scaleLength(20));
+    }
+
+    @Test
+    public void scalesSmallFramesToCapturedSize() {
+        ResolutionPolicy policy = ResolutionPolicy.forSize(2000, 4000, 20);
+        assertEquals(0.5, policy.getScale(), 1e-9);
+        assertEquals(10, policy.scaleLength(20));
+        assertEquals(ResolutionPolicy.MIN_KERNEL_LENGTH, ResolutionPolicy.forSize(640, 4000, 20).scaleLength(20));
+        assertFalse(ResolutionPolicy.forSize(6000, 4000, 20).isDownsampled());
+    }
+
+    @Test
+    public void estimatesPitchFromRuns() {
+        assertEquals(25.0, ResolutionPolicy.pitch(1000, 40), 1e-9);
+        assertEquals(0.0, ResolutionPolicy.pitch(1000, 0), 1e-9);
+    }
+}
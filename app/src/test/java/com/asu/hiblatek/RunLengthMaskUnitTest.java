@@ -0,0 +1,64 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link RunLengthMask}.
+ */
+public class RunLengthMaskUnitTest {
+    private static final byte W = (byte) 255;
+    private static final byte B = 0;
+
+    private static byte[][] randomLines(long seed, int count, int length) {
+        Random random = new Random(seed);
+        byte[][] lines = new byte[count][length];
+        for (byte[] line : lines) {
+            for (int p = 0; p < length; p++) {
+                line[p] = random.nextInt(3) == 0 ? B : W;
+            }
+        }
+        java.util.Arrays.fill(lines[3], W);
+        return lines;
+    }
+
+    @Test
+    public void countsMatchRawScanlines() {
+        ScanlineCounterUnitTest.ArrayLineSource raw =
+                new ScanlineCounterUnitTest.ArrayLineSource(randomLines(11, 50, 300));
+        RunLengthMask mask = RunLengthMask.encode(raw, false);
+        int[] lines = ScanlineCounter.sampleLines(raw.lineCount(), 0, 1);
+
+        ScanlineCounter.Result expected = new ScanlineCounter().count(raw, lines, 10);
+        ScanlineCounter.Result actual = new ScanlineCounter().count(mask, lines, 10);
+        assertArrayEquals(expected.counts, actual.counts);
+        for (int k = 0; k < lines.length; k++) {
+            assertArrayEquals(expected.runStarts[k], actual.runStarts[k]);
+        }
+        assertFalse(mask.hasBlackPixel(3));
+    }
+
+    @Test
+    public void readRestoresEncodedLine() {
+        byte[][] lines = randomLines(5, 4, 64);
+        RunLengthMask mask = RunLengthMask.encode(new ScanlineCounterUnitTest.ArrayLineSource(lines), false);
+        byte[] buffer = new byte[64];
+        for (int i = 0; i < lines.length; i++) {
+            mask.read(i, buffer);
+            assertArrayEquals(lines[i], buffer);
+        }
+    }
+
+    @Test
+    public void columnMaskDecodesRowMajor() {
+        // two columns of three pixels: column 0 = W B W, column 1 = B B W
+        byte[][] columns = {{W, B, W}, {B, B, W}};
+        RunLengthMask mask = RunLengthMask.encode(new ScanlineCounterUnitTest.ArrayLineSource(columns), true);
+        assertEquals(2, mask.runCount(0));
+        assertEquals(1, mask.runCount(1));
+        assertArrayEquals(new byte[] {W, B, B, B, W, W}, mask.toImage());
+    }
+}
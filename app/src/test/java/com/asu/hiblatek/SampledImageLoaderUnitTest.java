@@ -0,0 +1,23 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SampledImageLoader}.
+ */
+public class SampledImageLoaderUnitTest {
+    @Test
+    public void keepsImagesWithinBudget() {
+        assertEquals(1, SampledImageLoader.sampleSize(4000, 3000, 12_000_000));
+    }
+
+    @Test
+    public void halvesUntilWithinBudget() {
+        // 48MP -> 12MP
+        assertEquals(2, SampledImageLoader.sampleSize(8000, 6000, 12_000_000));
+        // 108MP -> 27MP is still too much, 6.75MP is not
+        assertEquals(4, SampledImageLoader.sampleSize(12000, 9000, 12_000_000));
+    }
+}
@@ -0,0 +1,103 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ScanlineCounter}.
+ */
+public class ScanlineCounterUnitTest {
+
+    /**
+     * Single-channel scanlines held in memory.
+     */
+    static class ArrayLineSource implements LineSource {
+        private final byte[][] lines;
+
+        ArrayLineSource(byte[][] lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public int lineCount() {
+            return lines.length;
+        }
+
+        @Override
+        public int lineLength() {
+            return lines[0].length;
+        }
+
+        @Override
+        public int stride() {
+            return 1;
+        }
+
+        @Override
+        public void read(int line, byte[] buffer) {
+            System.arraycopy(lines[line], 0, buffer, 0, buffer.length);
+        }
+    }
+
+    private static ArrayLineSource randomSource(long seed, int count, int length) {
+        Random random = new Random(seed);
+        byte[][] lines = new byte[count][length];
+        for (byte[] line : lines) {
+            for (int p = 0; p < length; p++) {
+                line[p] = random.nextInt(4) == 0 ? 0 : (byte) 255;
+            }
+        }
+        // one line without black pixels must be skipped
+        java.util.Arrays.fill(lines[count / 2], (byte) 255);
+        return new ArrayLineSource(lines);
+    }
+
+    @Test
+    public void samplesLinesInsideMargins() {
+        assertArrayEquals(new int[] {10, 13, 16, 19}, ScanlineCounter.sampleLines(30, 10, 3));
+        assertEquals(0, ScanlineCounter.sampleLines(15, 10, 3).length);
+    }
+
+    @Test
+    public void parallelResultMatchesSequential() {
+        ArrayLineSource source = randomSource(7, 200, 500);
+        int[] lines = ScanlineCounter.sampleLines(source.lineCount(), 0, 1);
+        ScanlineCounter.Result expected = new ScanlineCounter().count(source, lines, 10);
+
+        for (int parallelism : new int[] {2, 4, 8}) {
+            ScanlineCounter.Result actual = new ScanlineCounter(parallelism).count(source, lines, 10);
+            assertArrayEquals(expected.counts, actual.counts);
+            for (int k = 0; k < lines.length; k++) {
+                assertArrayEquals(expected.runStarts[k], actual.runStarts[k]);
+            }
+            assertEquals(expected.max(), actual.max());
+        }
+        assertFalse(expected.isValid(100));
+    }
+
+    @Test
+    public void scansOnNoMoreThreadsThanAskedFor() {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        ArrayLineSource source = new ArrayLineSource(randomSource(3, 64, 100).lines) {
+            @Override
+            public void read(int line, byte[] buffer) {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(2);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.read(line, buffer);
+                active.decrementAndGet();
+            }
+        };
+        new ScanlineCounter(2).count(source, ScanlineCounter.sampleLines(64, 0, 1), 0);
+        assertTrue(peak.get() <= 2);
+    }
+}
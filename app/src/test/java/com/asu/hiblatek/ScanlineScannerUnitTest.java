@@ -0,0 +1,48 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link ScanlineScanner}.
+ */
+public class ScanlineScannerUnitTest {
+    private static final byte W = (byte) 255;
+    private static final byte B = 0;
+
+    @Test
+    public void countsWhiteRuns() {
+        byte[] line = {B, W, W, B, W, B, B, W};
+        int[] starts = new int[ScanlineScanner.maxRuns(line.length)];
+        assertEquals(3, ScanlineScanner.countWhiteRuns(line, 0, line.length, 1, starts));
+        assertArrayEquals(new int[] {1, 4, 7, 0}, starts);
+    }
+
+    @Test
+    public void countsOnlyInsideRange() {
+        byte[] line = {W, W, B, W, B, W};
+        assertEquals(2, ScanlineScanner.countWhiteRuns(line, 1, 5, 1, null));
+    }
+
+    @Test
+    public void readsFirstChannelOfInterleavedPixels() {
+        // RGBA pixels: white, black (with white alpha), white
+        byte[] line = {W, W, W, W, B, B, B, W, W, W, W, W};
+        assertEquals(2, ScanlineScanner.countWhiteRuns(line, 0, 3, 4, null));
+        assertTrue(ScanlineScanner.hasBlackPixel(line, 3, 4));
+    }
+
+    @Test
+    public void allWhiteLineHasNoBlackPixel() {
+        byte[] line = {W, W, W, W};
+        assertFalse(ScanlineScanner.hasBlackPixel(line, line.length, 1));
+        assertEquals(1, ScanlineScanner.countWhiteRuns(line, 0, line.length, 1, null));
+    }
+
+    @Test
+    public void countsRunsAboveThreshold() {
+        byte[] line = {10, (byte) 129, (byte) 200, (byte) 128, (byte) 250, 0};
+        assertEquals(2, ScanlineScanner.countRunsAbove(line, line.length, 1, 128));
+    }
+}
@@ -0,0 +1,92 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SpectralCounter}. {@code Core.dft} needs the
+ * native library, so the spectrum is computed here with a plain DFT.
+ */
+public class SpectralCounterUnitTest {
+
+    private static float[] columnProfile(WovenFabricGenerator.Sample sample) {
+        float[] profile = new float[sample.width];
+        for (int y = 0; y < sample.height; y++) {
+            for (int x = 0; x < sample.width; x++)
+                profile[x] += (sample.pixels[y * sample.width + x] & 0xFF);
+        }
+        for (int x = 0; x < sample.width; x++)
+            profile[x] /= sample.height;
+        return profile;
+    }
+
+    private static SpectralCounter.Result count(float[] profile, int padded) {
+        float[] signal = SpectralCounter.window(profile, padded);
+        float[] complex = new float[2 * padded];
+        for (int k = 0; k < padded; k++) {
+            double re = 0;
+            double im = 0;
+            for (int i = 0; i < padded; i++) {
+                double angle = -2 * Math.PI * k * i / padded;
+                re += signal[i] * Math.cos(angle);
+                im += signal[i] * Math.sin(angle);
+            }
+            complex[2 * k] = (float) re;
+            complex[2 * k + 1] = (float) im;
+        }
+        return SpectralCounter.fromSpectrum(complex, profile.length, padded);
+    }
+
+    @Test
+    public void countsACleanWeave() {
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(600, 100).threads(30, 5).render();
+        SpectralCounter.Result result = count(columnProfile(sample), 600);
+        assertEquals(30, result.count());
+        assertEquals(20, result.pitch, 0.5);
+        assertTrue(result.strength > 0.5);
+    }
+
+    @Test
+    public void paddingDoesNotChangeTheCount() {
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(590, 100).threads(27, 5).render();
+        assertEquals(27, count(columnProfile(sample), 600).count());
+    }
+
+    @Test
+    public void ignoresNoiseAndUnevenLight() {
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(600, 100)
+                .threads(30, 5)
+                .blur(1)
+                .noise(8)
+                .illumination(0.2)
+                .glare(60)
+                .seed(5)
+                .render();
+        assertEquals(30, count(columnProfile(sample), 600).count());
+    }
+
+    @Test
+    public void marksThreadsOnTheBrightStripes() {
+        float[] profile = new float[200];
+        for (int x = 0; x < profile.length; x++)
+            profile[x] = (x % 10 == 4) ? 200 : 40;
+        SpectralCounter.Result result = count(profile, 200);
+        assertEquals(20, result.count());
+        for (int thread : result.threads)
+            assertEquals(4, thread % 10, 1);
+    }
+
+    @Test
+    public void flatProfileHasNoThreads() {
+        assertEquals(0, count(new float[64], 64).count());
+    }
+
+    @Test
+    public void interpolatesThePeak() {
+        assertEquals(0, SpectralCounter.interpolate(1, 2, 1), 1e-9);
+        assertTrue(SpectralCounter.interpolate(1, 2, 1.5) > 0);
+        assertTrue(SpectralCounter.interpolate(1.5, 2, 1) < 0);
+        assertEquals(0, SpectralCounter.interpolate(1, 1, 1), 1e-9);
+    }
+}
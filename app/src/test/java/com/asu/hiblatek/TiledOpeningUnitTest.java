@@ -0,0 +1,116 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link TiledOpening}.
+ */
+public class TiledOpeningUnitTest {
+
+    /**
+     * A fabric-like image: bright vertical and horizontal bars of random
+     * widths over noise, with a second, ignored channel.
+     */
+    private static ArrayTileSource randomFabric(long seed, int width, int height) {
+        Random random = new Random(seed);
+        int stride = 2;
+        byte[] pixels = new byte[width * height * stride];
+        boolean[] warp = new boolean[width];
+        boolean[] weft = new boolean[height];
+        for (int x = 0; x < width; x += 3 + random.nextInt(12))
+            for (int k = x; k < Math.min(width, x + 2 + random.nextInt(5)); k++) warp[k] = true;
+        for (int y = 0; y < height; y += 3 + random.nextInt(12))
+            for (int k = y; k < Math.min(height, y + 2 + random.nextInt(5)); k++) weft[k] = true;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = (y * width + x) * stride;
+                boolean bright = (warp[x] || weft[y]) && random.nextInt(40) != 0;
+                pixels[i] = (byte) (bright ? 140 + random.nextInt(116) : random.nextInt(140));
+                pixels[i + 1] = (byte) random.nextInt(256);
+            }
+        }
+        return new ArrayTileSource(pixels, width, height, stride);
+    }
+
+    private static byte[] untiledVertical(ArrayTileSource image, int kernel) {
+        int w = image.width, h = image.height;
+        byte[] opened = new byte[w * h];
+        LineOpening opening = new LineOpening(kernel, 128);
+        for (int c = 0; c < w; c++)
+            opening.open(image.pixels, c * image.stride, w * image.stride, h, opened, c, w);
+        return opened;
+    }
+
+    private static byte[] untiledHorizontal(ArrayTileSource image, int kernel) {
+        int w = image.width, h = image.height;
+        byte[] opened = new byte[w * h];
+        LineOpening opening = new LineOpening(kernel, 128);
+        for (int r = 0; r < h; r++)
+            opening.open(image.pixels, r * w * image.stride, image.stride, w, opened, r * w, 1);
+        return opened;
+    }
+
+    @Test
+    public void matchesUntiledOpening() {
+        ArrayTileSource image = randomFabric(11, 157, 131);
+        for (int kernel : new int[] {1, 6, 9, 20}) {
+            byte[] vertical = untiledVertical(image, kernel);
+            byte[] horizontal = untiledHorizontal(image, kernel);
+            for (int tile : new int[] {1, 7, 16, 50, 200}) {
+                TiledOpening tiled = new TiledOpening(kernel, 128, tile);
+                String label = "kernel=" + kernel + " tile=" + tile;
+
+                RunLengthMask vMask = tiled.verticalLines(image);
+                assertFalse(vMask.isColumns());
+                assertEquals(image.height, vMask.lineCount());
+                assertArrayEquals(label, vertical, vMask.toImage());
+
+                RunLengthMask hMask = tiled.horizontalLines(image);
+                assertTrue(hMask.isColumns());
+                assertEquals(image.width, hMask.lineCount());
+                assertArrayEquals(label, horizontal, hMask.toImage());
+            }
+        }
+    }
+
+    @Test
+    public void joinsRunsAcrossSeams() {
+        // a bar spanning several tiles must stay a single run per scanline
+        int width = 100, height = 60;
+        byte[] pixels = new byte[width * height];
+        for (int y = 0; y < height; y++)
+            for (int x = 30; x < 34; x++) pixels[y * width + x] = (byte) 255;
+        for (int x = 0; x < width; x++)
+            for (int y = 20; y < 23; y++) pixels[y * width + x] = (byte) 255;
+        ArrayTileSource image = new ArrayTileSource(pixels, width, height, 1);
+
+        TiledOpening tiled = new TiledOpening(10, 128, 8);
+        RunLengthMask vMask = tiled.verticalLines(image);
+        RunLengthMask hMask = tiled.horizontalLines(image);
+        for (int y = 0; y < height; y++)
+            assertEquals("row " + y, 1, vMask.runCount(y));
+        for (int x = 0; x < width; x++)
+            assertEquals("column " + x, 1, hMask.runCount(x));
+    }
+
+    @Test
+    public void buffersDoNotGrowWithTheImage() {
+        TiledOpening small = new TiledOpening(20, 128, 64);
+        small.verticalLines(randomFabric(1, 200, 200));
+        small.horizontalLines(randomFabric(1, 200, 200));
+        TiledOpening large = new TiledOpening(20, 128, 64);
+        large.verticalLines(randomFabric(2, 900, 700));
+        large.horizontalLines(randomFabric(2, 900, 700));
+        assertEquals(small.bufferBytes(), large.bufferBytes());
+        assertTrue(large.bufferBytes() < 900 * 700);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyTiles() {
+        new TiledOpening(20, 128, 0);
+    }
+}
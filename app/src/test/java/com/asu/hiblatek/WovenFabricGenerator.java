@@ -0,0 +1,355 @@
+package com.asu.hiblatek;
+
+import java.util.Arrays;
+
+/**
+ * Renders synthetic plain-weave fabric with a known number of warp and weft
+ * threads, for benchmarks and accuracy tests.
+ * <p>
+ * The fabric is a rectangle of {@code warp × weft} threads, optionally
+ * rotated about the centre of the image and framed by black. Where two
+ * threads cross, the one on top alternates like a plain weave, and the
+ * thread underneath is slightly darker. Blur, sensor noise, uneven
+ * illumination and glare are applied afterwards. Every pixel costs a
+ * constant amount of work, so small images render in well under a
+ * millisecond and thousands of them can be made for load tests. The same
+ * seed always gives the same image.
+ */
+final class WovenFabricGenerator {
+    /**
+     * Brightness of the top of a thread, of a thread that passes under
+     * another, and of the gaps between threads.
+     */
+    static final int THREAD = 210;
+    static final int UNDER = 165;
+    static final int GAP = 45;
+
+    private final int width;
+    private final int height;
+    private int warp = 40;
+    private int weft = 30;
+    private double gap = 0.35;
+    private double rotation = 0;
+    private int blurRadius = 0;
+    private double noise = 0;
+    private double illumination = 0;
+    private double glare = 0;
+    private double border = 0;
+    private long seed = 1;
+
+    /**
+     * A rendered image and its ground truth.
+     */
+    static class Sample {
+        /**
+         * Grey pixels, row after row.
+         */
+        final byte[] pixels;
+        final int width;
+        final int height;
+        /**
+         * Number of vertical (warp) threads.
+         */
+        final int warp;
+        /**
+         * Number of horizontal (weft) threads.
+         */
+        final int weft;
+
+        Sample(byte[] pixels, int width, int height, int warp, int weft) {
+            this.pixels = pixels;
+            this.width = width;
+            this.height = height;
+            this.warp = warp;
+            this.weft = weft;
+        }
+
+        /**
+         * Returns the image as opaque RGBA pixels, the layout of a decoded
+         * photo after {@code Utils.bitmapToMat}.
+         * @return four bytes per pixel
+         */
+        byte[] toRgba() {
+            byte[] rgba = new byte[pixels.length * 4];
+            for (int i = 0, k = 0; i < pixels.length; i++, k += 4) {
+                rgba[k] = rgba[k + 1] = rgba[k + 2] = pixels[i];
+                rgba[k + 3] = (byte) 255;
+            }
+            return rgba;
+        }
+    }
+
+    /**
+     * Creates a generator of images of the given size.
+     * @param width     Width in pixels.
+     * @param height    Height in pixels.
+     */
+    WovenFabricGenerator(int width, int height) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("invalid size: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Sets the number of threads in each direction.
+     * @param warp  Number of vertical threads.
+     * @param weft  Number of horizontal threads.
+     * @return      This generator.
+     */
+    WovenFabricGenerator threads(int warp, int weft) {
+        if (warp < 1 || weft < 1)
+            throw new IllegalArgumentException("at least one thread is needed in each direction");
+        this.warp = warp;
+        this.weft = weft;
+        return this;
+    }
+
+    /**
+     * Sets the width of the gap between two threads; the thread fills the
+     * rest of the pitch.
+     * @param gap   Fraction of the thread pitch, below {@code 1}.
+     * @return      This generator.
+     */
+    WovenFabricGenerator gap(double gap) {
+        if (gap < 0 || gap >= 1)
+            throw new IllegalArgumentException("gap must be in [0, 1): " + gap);
+        this.gap = gap;
+        return this;
+    }
+
+    /**
+     * Rotates the fabric about the centre of the image.
+     * @param degrees   Angle, counter-clockwise.
+     * @return          This generator.
+     */
+    WovenFabricGenerator rotation(double degrees) {
+        this.rotation = Math.toRadians(degrees);
+        return this;
+    }
+
+    /**
+     * Blurs the image with a box filter, applied twice.
+     * @param radius    Radius of the box in pixels; {@code 0} for none.
+     * @return          This generator.
+     */
+    WovenFabricGenerator blur(int radius) {
+        if (radius < 0)
+            throw new IllegalArgumentException("radius must not be negative: " + radius);
+        this.blurRadius = radius;
+        return this;
+    }
+
+    /**
+     * Adds roughly Gaussian sensor noise.
+     * @param sigma Standard deviation in grey levels.
+     * @return      This generator.
+     */
+    WovenFabricGenerator noise(double sigma) {
+        this.noise = sigma;
+        return this;
+    }
+
+    /**
+     * Darkens the image from its left edge to its right edge.
+     * @param strength  Fraction of the brightness lost at the right edge.
+     * @return          This generator.
+     */
+    WovenFabricGenerator illumination(double strength) {
+        this.illumination = strength;
+        return this;
+    }
+
+    /**
+     * Adds a bright spot of glare in the upper left quarter.
+     * @param strength  Grey levels added at the centre of the spot.
+     * @return          This generator.
+     */
+    WovenFabricGenerator glare(double strength) {
+        this.glare = strength;
+        return this;
+    }
+
+    /**
+     * Surrounds the fabric with black.
+     * @param fraction  Width of the border on each side, as a fraction of
+     *                  the image size.
+     * @return          This generator.
+     */
+    WovenFabricGenerator border(double fraction) {
+        if (fraction < 0 || fraction >= 0.5)
+            throw new IllegalArgumentException("border must be in [0, 0.5): " + fraction);
+        this.border = fraction;
+        return this;
+    }
+
+    /**
+     * Sets the seed of the noise.
+     * @param seed  The seed.
+     * @return      This generator.
+     */
+    WovenFabricGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Renders an image.
+     * @return the image and its thread counts
+     */
+    Sample render() {
+        double left = width * border;
+        double top = height * border;
+        double fabricWidth = width - 2 * left;
+        double fabricHeight = height - 2 * top;
+        double pitchX = fabricWidth / warp;
+        double pitchY = fabricHeight / weft;
+        double cx = width / 2.0;
+        double cy = height / 2.0;
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+
+        float[] image = new float[width * height];
+        for (int y = 0; y < height; y++) {
+            // fabric coordinates of the pixel centres of this row
+            double dy = y + 0.5 - cy;
+            double u = cos * (0.5 - cx) + sin * dy + cx - left;
+            double v = -sin * (0.5 - cx) + cos * dy + cy - top;
+            for (int x = 0; x < width; x++, u += cos, v -= sin) {
+                if (u < 0 || v < 0 || u >= fabricWidth || v >= fabricHeight)
+                    continue;
+                image[y * width + x] = weave(u / pitchX, v / pitchY);
+            }
+        }
+
+        if (blurRadius > 0) {
+            float[] scratch = new float[width * height];
+            double[] sums = new double[width];
+            for (int pass = 0; pass < 2; pass++) {
+                for (int y = 0; y < height; y++)
+                    blurRow(image, y * width, width, blurRadius, scratch);
+                blurColumns(image, width, height, blurRadius, scratch, sums);
+            }
+        }
+
+        byte[] pixels = new byte[width * height];
+        long state = seed * 0x9E3779B97F4A7C15L + 1;
+        double glareX = width * 0.3, glareY = height * 0.3;
+        double glareRadius = 0.15 * Math.min(width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                double value = image[i];
+                if (value == 0)
+                    continue;   // the black border stays black
+                if (illumination != 0)
+                    value *= 1 - illumination * x / width;
+                if (glare != 0) {
+                    double dx = (x - glareX) / glareRadius, dy = (y - glareY) / glareRadius;
+                    double d2 = dx * dx + dy * dy;
+                    if (d2 < 9)
+                        value += glare * Math.exp(-d2);
+                }
+                if (noise != 0) {
+                    // the sum of four uniform values is close enough to a Gaussian
+                    double sum = 0;
+                    for (int k = 0; k < 4; k++) {
+                        state ^= state << 13;
+                        state ^= state >>> 7;
+                        state ^= state << 17;
+                        sum += (state >>> 11) * 0x1.0p-53;
+                    }
+                    value += noise * (sum - 2) * Math.sqrt(3);
+                }
+                pixels[i] = (byte) Math.max(2, Math.min(255, (int) Math.round(value)));
+            }
+        }
+        return new Sample(pixels, width, height, warp, weft);
+    }
+
+    /**
+     * Returns the brightness of the fabric at a point, in thread pitches.
+     */
+    private float weave(double s, double t) {
+        int i = (int) s;
+        int j = (int) t;
+        double fs = s - i - 0.5;
+        double ft = t - j - 0.5;
+        double half = (1 - gap) / 2;
+        boolean onWarp = Math.abs(fs) < half;
+        boolean onWeft = Math.abs(ft) < half;
+        if (!onWarp && !onWeft)
+            return GAP;
+        // threads are rounded, so they darken toward their edges
+        double shadeWarp = 1 - 0.25 * (fs / half) * (fs / half);
+        double shadeWeft = 1 - 0.25 * (ft / half) * (ft / half);
+        if (onWarp && onWeft) {
+            boolean warpOnTop = ((i + j) & 1) == 0;
+            return (float) (warpOnTop ? THREAD * shadeWarp : THREAD * shadeWeft);
+        }
+        if (onWarp)
+            return (float) (((i + j) & 1) == 0 ? THREAD : UNDER) * (float) shadeWarp;
+        return (float) (((i + j) & 1) == 1 ? THREAD : UNDER) * (float) shadeWeft;
+    }
+
+    /**
+     * Box-blurs one row in place with a running sum. Black border pixels
+     * are left black so the border stays sharp.
+     */
+    private static void blurRow(float[] image, int offset, int length, int radius, float[] scratch) {
+        double sum = 0;
+        int count = 0;
+        for (int p = 0; p < Math.min(radius, length); p++) {
+            sum += image[offset + p];
+            count++;
+        }
+        for (int p = 0; p < length; p++) {
+            if (p + radius < length) {
+                sum += image[offset + p + radius];
+                count++;
+            }
+            if (p - radius - 1 >= 0) {
+                sum -= image[offset + p - radius - 1];
+                count--;
+            }
+            scratch[p] = (float) (sum / count);
+        }
+        for (int p = 0, k = offset; p < length; p++, k++) {
+            if (image[k] != 0)
+                image[k] = scratch[p];
+        }
+    }
+
+    /**
+     * Box-blurs every column at once, keeping one running sum per column
+     * so the image is still read row after row.
+     */
+    private static void blurColumns(float[] image, int width, int height, int radius,
+                                    float[] scratch, double[] sums) {
+        System.arraycopy(image, 0, scratch, 0, width * height);
+        Arrays.fill(sums, 0);
+        int count = 0;
+        for (int p = 0; p < Math.min(radius, height); p++, count++) {
+            for (int x = 0; x < width; x++)
+                sums[x] += scratch[p * width + x];
+        }
+        for (int p = 0; p < height; p++) {
+            if (p + radius < height) {
+                int row = (p + radius) * width;
+                for (int x = 0; x < width; x++)
+                    sums[x] += scratch[row + x];
+                count++;
+            }
+            if (p - radius - 1 >= 0) {
+                int row = (p - radius - 1) * width;
+                for (int x = 0; x < width; x++)
+                    sums[x] -= scratch[row + x];
+                count--;
+            }
+            for (int x = 0, k = p * width; x < width; x++, k++) {
+                if (image[k] != 0)
+                    image[k] = (float) (sums[x] / count);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.asu.hiblatek;
+
+import org.junit.Test;
+import org.opencv.core.Rect;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link WovenFabricGenerator}, which also check that
+ * the pure-Java counting steps recover its ground truth.
+ */
+public class WovenFabricGeneratorUnitTest {
+
+    private static int[] count(WovenFabricGenerator.Sample sample) {
+        ArrayTileSource image = new ArrayTileSource(sample.pixels, sample.width, sample.height, 1);
+        TiledOpening opening = new TiledOpening(20, 128, 128);
+        RunLengthMask vertical = opening.verticalLines(image);
+        RunLengthMask horizontal = opening.horizontalLines(image);
+        int[] rows = ScanlineCounter.sampleLines(vertical.lineCount(), 10, vertical.lineCount() / 20);
+        int[] cols = ScanlineCounter.sampleLines(horizontal.lineCount(), 10, horizontal.lineCount() / 20);
+        return new int[] {
+                new ScanlineCounter().count(vertical, rows, 0).max(),
+                new ScanlineCounter().count(horizontal, cols, 0).max()
+        };
+    }
+
+    @Test
+    public void sameSeedRendersSameImage() {
+        WovenFabricGenerator generator = new WovenFabricGenerator(200, 150).noise(10).seed(7);
+        assertArrayEquals(generator.render().pixels, generator.render().pixels);
+        byte[] other = generator.seed(8).render().pixels;
+        assertFalse(java.util.Arrays.equals(generator.seed(7).render().pixels, other));
+    }
+
+    @Test
+    public void cleanFabricCountsItsThreads() {
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(800, 600).threads(30, 24).render();
+        assertArrayEquals(new int[] {30, 24}, count(sample));
+    }
+
+    @Test
+    public void degradedFabricCountsItsThreads() {
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(800, 600)
+                .threads(30, 24)
+                .blur(1)
+                .noise(4)
+                .illumination(0.1)
+                .glare(40)
+                .seed(3)
+                .render();
+        assertArrayEquals(new int[] {30, 24}, count(sample));
+    }
+
+    @Test
+    public void rotatedFabricCountsNearlyItsThreads() {
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(800, 600)
+                .threads(30, 24).rotation(2).border(0.05).render();
+        int[] counts = count(sample);
+        assertEquals(30, counts[0], 1);
+        assertEquals(24, counts[1], 1);
+    }
+
+    @Test
+    public void borderIsBlackAndCroppable() {
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(400, 300)
+                .border(0.1).noise(5).blur(2).render();
+        assertEquals(0, sample.pixels[0]);
+        assertEquals(0, sample.pixels[sample.pixels.length - 1]);
+        Rect content = BorderCrop.find(new ArrayTileSource(sample.pixels, 400, 300, 1),
+                BorderCrop.DEFAULT_THRESHOLD);
+        assertEquals(new Rect(40, 30, 320, 240), content);
+    }
+
+    @Test
+    public void rgbaIsOpaqueGrey() {
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(10, 10).render();
+        byte[] rgba = sample.toRgba();
+        for (int i = 0; i < sample.pixels.length; i++) {
+            assertEquals(sample.pixels[i], rgba[4 * i + 1]);
+            assertEquals((byte) 255, rgba[4 * i + 3]);
+        }
+    }
+}
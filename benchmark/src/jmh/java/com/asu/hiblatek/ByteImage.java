@@ -0,0 +1,74 @@
+package com.asu.hiblatek;
+
+import org.opencv.core.Rect;
+
+/**
+ * A single-channel image held in a byte array, standing in for a grey
+ * {@code Mat} on the host. A cropped image shares the pixels of its parent,
+ * like a submat.
+ */
+final class ByteImage implements TileSource {
+    final byte[] pixels;
+    final int offset;
+    final int width;
+    final int height;
+    final int rowStride;
+
+    ByteImage(byte[] pixels, int offset, int width, int height, int rowStride) {
+        this.pixels = pixels;
+        this.offset = offset;
+        this.width = width;
+        this.height = height;
+        this.rowStride = rowStride;
+    }
+
+    /**
+     * Renders a plain-weave test image of about the given size, with a
+     * black border of 5% on every side and some noise and blur.
+     * @param megapixels    Approximate number of pixels, in millions.
+     * @param seed          Seed of the noise.
+     * @return              The image.
+     */
+    static ByteImage fabric(int megapixels, long seed) {
+        int height = (int) Math.sqrt(megapixels * 1e6 * 3 / 4);
+        int width = height * 4 / 3;
+        WovenFabricGenerator.Sample sample = new WovenFabricGenerator(width, height)
+                .threads(Math.max(10, width / 30), Math.max(8, height / 30))
+                .border(0.05)
+                .blur(1)
+                .noise(3)
+                .seed(seed)
+                .render();
+        return new ByteImage(sample.pixels, 0, width, height, width);
+    }
+
+    /**
+     * Returns a view of a rectangle of the image, sharing its pixels.
+     * @param rect  The rectangle.
+     * @return      The view.
+     */
+    ByteImage crop(Rect rect) {
+        return new ByteImage(pixels, offset + rect.y * rowStride + rect.x, rect.width, rect.height, rowStride);
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public int stride() {
+        return 1;
+    }
+
+    @Override
+    public void read(int x, int y, int w, int h, byte[] buffer) {
+        for (int r = 0; r < h; r++)
+            System.arraycopy(pixels, offset + (y + r) * rowStride + x, buffer, r * w, w);
+    }
+}
@@ -0,0 +1,78 @@
+package com.asu.hiblatek;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.opencv.core.Rect;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and per-operation latency of the counting hot paths over
+ * photos of 1, 12 and 48 megapixels. Run with the {@code gc} profiler,
+ * which the build enables, to also get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CountingBenchmark {
+    @Param({"1", "12", "48"})
+    public int megapixels;
+
+    private ByteImage photo;
+    private ByteImage content;
+    private byte[] output;
+    private RunLengthMask verticalMask;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        photo = ByteImage.fabric(megapixels, 42);
+        content = photo.crop(BorderCrop.find(photo, BorderCrop.DEFAULT_THRESHOLD));
+        output = new byte[photo.width * photo.height];
+        verticalMask = new TiledOpening(HostPipeline.KERNEL_LENGTH, HostPipeline.THRESHOLD, HostPipeline.AUTO_TILE_SIZE)
+                .verticalLines(content);
+    }
+
+    @Benchmark
+    public byte[] lineOpening() {
+        HostPipeline.openColumns(content, output);
+        return output;
+    }
+
+    @Benchmark
+    public RunLengthMask tiledOpening() {
+        return new TiledOpening(HostPipeline.KERNEL_LENGTH, HostPipeline.THRESHOLD, HostPipeline.AUTO_TILE_SIZE)
+                .verticalLines(content);
+    }
+
+    @Benchmark
+    public int scanlineCount() {
+        return HostPipeline.countScanlines(verticalMask, 0);
+    }
+
+    @Benchmark
+    public int componentCount() {
+        return new ComponentCounter(ComponentCounter.DEFAULT_MIN_SPAN, HostPipeline.KERNEL_LENGTH)
+                .count(verticalMask).count();
+    }
+
+    @Benchmark
+    public Rect borderCrop() {
+        return BorderCrop.find(photo, BorderCrop.DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Follows the default path of {@code FiberCounter}: whole-image fused
+     * opening at 1 MP, tiled opening above {@link HostPipeline#AUTO_TILE_PIXELS}.
+     */
+    @Benchmark
+    public int[] endToEnd() {
+        return HostPipeline.count(photo);
+    }
+}
@@ -0,0 +1,122 @@
+package com.asu.hiblatek;
+
+import org.opencv.core.Rect;
+
+/**
+ * Pure-Java versions of the OpenCV steps of {@link FiberCounter#start()},
+ * so the whole count can be measured on the host.
+ */
+final class HostPipeline {
+    /**
+     * Same parameters as {@code FiberCounter} at full resolution.
+     */
+    static final int KERNEL_LENGTH = 20;
+    static final int THRESHOLD = 128;
+    static final int MARGIN = 10;
+    static final int LOOP_EVERY_PERCENT = 3;
+    static final int AUTO_TILE_PIXELS = 4_000_000;
+    static final int AUTO_TILE_SIZE = 512;
+
+    private HostPipeline() {
+    }
+
+    /**
+     * Thresholds and opens every column, like the fused vertical opening.
+     * @param src   Source image.
+     * @param dst   Receives the opened image, row after row.
+     */
+    static void openColumns(ByteImage src, byte[] dst) {
+        LineOpening opening = new LineOpening(KERNEL_LENGTH, THRESHOLD);
+        for (int x = 0; x < src.width; x++)
+            opening.open(src.pixels, src.offset + x, src.rowStride, src.height, dst, x, src.width);
+    }
+
+    /**
+     * Thresholds and opens every row, like the fused horizontal opening.
+     * @param src   Source image.
+     * @param dst   Receives the opened image, row after row.
+     */
+    static void openRows(ByteImage src, byte[] dst) {
+        LineOpening opening = new LineOpening(KERNEL_LENGTH, THRESHOLD);
+        for (int y = 0; y < src.height; y++)
+            opening.open(src.pixels, src.offset + y * src.rowStride, 1, src.width, dst, y * src.width, 1);
+    }
+
+    /**
+     * Returns the rows or the columns of a packed single-channel image,
+     * like {@code MatLineSource}.
+     * @param image     The pixels, row after row.
+     * @param width     Width of the image.
+     * @param height    Height of the image.
+     * @param columns   {@code true} for the columns.
+     * @return          The scanlines.
+     */
+    static LineSource lines(byte[] image, int width, int height, boolean columns) {
+        return new LineSource() {
+            @Override
+            public int lineCount() {
+                return columns ? width : height;
+            }
+
+            @Override
+            public int lineLength() {
+                return columns ? height : width;
+            }
+
+            @Override
+            public int stride() {
+                return 1;
+            }
+
+            @Override
+            public void read(int line, byte[] buffer) {
+                if (!columns) {
+                    System.arraycopy(image, line * width, buffer, 0, width);
+                    return;
+                }
+                for (int y = 0; y < height; y++)
+                    buffer[y] = image[y * width + line];
+            }
+        };
+    }
+
+    /**
+     * Counts the sampled scanlines of a mask, like the scanline engine.
+     * @param mask  The opened mask.
+     * @param from  First pixel of every scanline to inspect.
+     * @return      The highest count.
+     */
+    static int countScanlines(RunLengthMask mask, int from) {
+        int increment = Math.max(1, (int) (mask.lineCount() * (LOOP_EVERY_PERCENT / 100.0)));
+        int[] lines = ScanlineCounter.sampleLines(mask.lineCount(), MARGIN, increment);
+        return new ScanlineCounter().count(mask, lines, from).max();
+    }
+
+    /**
+     * Crops the border, isolates both directions and counts them, the way
+     * {@code FiberCounter} does by default at full resolution: images above
+     * {@link #AUTO_TILE_PIXELS} are opened tile by tile, smaller ones whole
+     * with the fused opening and then run-length encoded.
+     * @param photo The image.
+     * @return      The vertical and horizontal counts.
+     */
+    static int[] count(ByteImage photo) {
+        Rect content = BorderCrop.find(photo, BorderCrop.DEFAULT_THRESHOLD);
+        ByteImage image = photo.crop(content);
+        RunLengthMask vertical;
+        RunLengthMask horizontal;
+        if ((long) image.width * image.height > AUTO_TILE_PIXELS) {
+            TiledOpening opening = new TiledOpening(KERNEL_LENGTH, THRESHOLD, AUTO_TILE_SIZE);
+            vertical = opening.verticalLines(image);
+            horizontal = opening.horizontalLines(image);
+        }
+        else {
+            byte[] opened = new byte[image.width * image.height];
+            openColumns(image, opened);
+            vertical = RunLengthMask.encode(lines(opened, image.width, image.height, false), false);
+            openRows(image, opened);
+            horizontal = RunLengthMask.encode(lines(opened, image.width, image.height, true), true);
+        }
+        return new int[] {countScanlines(vertical, 0), countScanlines(horizontal, MARGIN)};
+    }
+}
@@ -0,0 +1,158 @@
+package org.opencv.android;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import android.util.Log;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * A pool of reusable Mats keyed by size and type.
+ * Mats are taken with acquire() and handed back with release(). A Mat that was handed back
+ * keeps its native buffer and is given out again by the next acquire() of the same size and
+ * type, so a steady stream of equally sized frames allocates no native memory and creates no
+ * new finalizable Mat objects.
+ * The pool counts its hits and misses and the native bytes held by Mats that are given out.
+ * All methods are thread-safe.
+ */
+public class MatPool {
+    private static final String TAG = "MatPool";
+
+    private final int mMaxIdlePerKey;
+    private final HashMap<Long, ArrayDeque<Mat>> mIdle = new HashMap<Long, ArrayDeque<Mat>>();
+    private final IdentityHashMap<Mat, Long> mOutstanding = new IdentityHashMap<Mat, Long>();
+    private long mHits;
+    private long mMisses;
+    private long mOutstandingBytes;
+    private long mIdleBytes;
+
+    /**
+     * @param maxIdlePerKey - how many released Mats of one size and type are kept for reuse;
+     *                        further ones are freed
+     */
+    public MatPool(int maxIdlePerKey) {
+        if (maxIdlePerKey < 1)
+            throw new IllegalArgumentException("maxIdlePerKey must be at least 1: " + maxIdlePerKey);
+        mMaxIdlePerKey = maxIdlePerKey;
+    }
+
+    /**
+     * Returns a Mat of the given size and type. Its content is undefined.
+     * @param rows - number of rows
+     * @param cols - number of columns
+     * @param type - OpenCV type, e.g. CvType.CV_8UC4
+     * @return a pooled Mat if one is idle, otherwise a newly allocated one
+     */
+    public synchronized Mat acquire(int rows, int cols, int type) {
+        ArrayDeque<Mat> idle = mIdle.get(key(rows, cols, type));
+        Mat mat = (idle == null) ? null : idle.pollFirst();
+        if (mat != null) {
+            mHits++;
+            mIdleBytes -= bytes(mat);
+        } else {
+            mMisses++;
+            mat = new Mat(rows, cols, type);
+        }
+        long size = bytes(mat);
+        mOutstanding.put(mat, size);
+        mOutstandingBytes += size;
+        return mat;
+    }
+
+    /**
+     * Hands a Mat back to the pool. The Mat may have been reallocated to another size or type
+     * while it was out; it is then pooled under its new size and type. A Mat that was released
+     * by its user, or that does not fit in the pool, is freed.
+     * @param mat - a Mat obtained from acquire()
+     */
+    public synchronized void release(Mat mat) {
+        Long size = mOutstanding.remove(mat);
+        if (size == null)
+            throw new IllegalArgumentException("the Mat was not acquired from this pool");
+        mOutstandingBytes -= size;
+
+        if (mat.empty()) {
+            mat.release();
+            return;
+        }
+        long key = key(mat.rows(), mat.cols(), mat.type());
+        ArrayDeque<Mat> idle = mIdle.get(key);
+        if (idle == null) {
+            idle = new ArrayDeque<Mat>(mMaxIdlePerKey);
+            mIdle.put(key, idle);
+        }
+        if (idle.size() < mMaxIdlePerKey) {
+            idle.addFirst(mat);
+            mIdleBytes += bytes(mat);
+        } else {
+            mat.release();
+        }
+    }
+
+    /**
+     * Frees every idle Mat. Mats that are given out are not affected.
+     */
+    public synchronized void clear() {
+        for (ArrayDeque<Mat> idle : mIdle.values()) {
+            for (Mat mat : idle)
+                mat.release();
+        }
+        mIdle.clear();
+        mIdleBytes = 0;
+        if (!mOutstanding.isEmpty())
+            Log.w(TAG, mOutstanding.size() + " Mats (" + mOutstandingBytes + " bytes) are still out");
+    }
+
+    /**
+     * @return number of acquire() calls served by an idle Mat
+     */
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    /**
+     * @return number of acquire() calls that allocated a new Mat
+     */
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return fraction of acquire() calls served by an idle Mat, or 0 before the first one
+     */
+    public synchronized double getHitRate() {
+        long total = mHits + mMisses;
+        return (total == 0) ? 0 : mHits / (double) total;
+    }
+
+    /**
+     * @return native bytes held by the Mats that are given out
+     */
+    public synchronized long getOutstandingBytes() {
+        return mOutstandingBytes;
+    }
+
+    /**
+     * @return native bytes held by the idle Mats
+     */
+    public synchronized long getIdleBytes() {
+        return mIdleBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MatPool{hits=" + mHits + ", misses=" + mMisses + ", outstanding=" + mOutstandingBytes
+                + " bytes, idle=" + mIdleBytes + " bytes}";
+    }
+
+    private static long key(int rows, int cols, int type) {
+        return ((long) rows << 40) | ((long) cols << 16) | (type & 0xFFFF);
+    }
+
+    private static long bytes(Mat mat) {
+        return mat.total() * CvType.ELEM_SIZE(mat.type());
+    }
+}
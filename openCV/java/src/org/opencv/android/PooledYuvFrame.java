@@ -0,0 +1,149 @@
+package org.opencv.android;
+
+import java.nio.ByteBuffer;
+
+import org.opencv.android.CameraBridgeViewBase.CvCameraViewFrame;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * A YUV_420_888 camera frame whose Mats are drawn from a MatPool.
+ * The planes of every frame are copied into one I420 staging array that is kept between frames,
+ * and gray() and rgba() are filled from it into pooled Mats. No Mat header is made over the
+ * planes of a frame, so once the first frame has been converted a stream of equally sized
+ * frames allocates no native memory at all.
+ * A frame is reused: set() points it at the next image and release() hands its Mats back.
+ */
+public class PooledYuvFrame implements CvCameraViewFrame {
+    private final MatPool mPool;
+    private byte[] mI420;
+    private byte[] mRow;
+    private boolean mStaged;
+    private int mWidth;
+    private int mHeight;
+    private ByteBuffer mY;
+    private int mYRowStride;
+    private ByteBuffer mU;
+    private ByteBuffer mV;
+    private int mChromaRowStride;
+    private int mChromaPixelStride;
+    private Mat mGray;
+    private Mat mRgba;
+
+    /**
+     * @param pool - the pool the frame's Mats are drawn from
+     */
+    public PooledYuvFrame(MatPool pool) {
+        mPool = pool;
+    }
+
+    /**
+     * Points the frame at the planes of the next image. The planes are read on the first call to
+     * gray() or rgba() and must stay valid until then.
+     * @param width - width of the image
+     * @param height - height of the image
+     * @param y - the luminance plane, one byte per pixel
+     * @param yRowStride - distance in bytes between two rows of the luminance plane
+     * @param u - the U plane
+     * @param v - the V plane
+     * @param chromaRowStride - distance in bytes between two rows of the chroma planes
+     * @param chromaPixelStride - distance in bytes between two pixels of the chroma planes;
+     *                            2 when they are interleaved
+     */
+    public void set(int width, int height, ByteBuffer y, int yRowStride,
+                    ByteBuffer u, ByteBuffer v, int chromaRowStride, int chromaPixelStride) {
+        if (mGray != null || mRgba != null)
+            throw new IllegalStateException("the previous frame was not released");
+        mWidth = width;
+        mHeight = height;
+        mY = y;
+        mYRowStride = yRowStride;
+        mU = u;
+        mV = v;
+        mChromaRowStride = chromaRowStride;
+        mChromaPixelStride = chromaPixelStride;
+        mStaged = false;
+    }
+
+    @Override
+    public Mat gray() {
+        if (mGray == null) {
+            stage();
+            mGray = mPool.acquire(mHeight, mWidth, CvType.CV_8UC1);
+            mGray.put(0, 0, mI420, 0, mWidth * mHeight);
+        }
+        return mGray;
+    }
+
+    @Override
+    public Mat rgba() {
+        if (mRgba == null) {
+            stage();
+            Mat i420 = mPool.acquire(mHeight + mHeight / 2, mWidth, CvType.CV_8UC1);
+            i420.put(0, 0, mI420);
+            mRgba = mPool.acquire(mHeight, mWidth, CvType.CV_8UC4);
+            Imgproc.cvtColor(i420, mRgba, Imgproc.COLOR_YUV2RGBA_I420, 4);
+            mPool.release(i420);
+        }
+        return mRgba;
+    }
+
+    /**
+     * Hands the frame's Mats back to the pool and forgets the planes.
+     */
+    public void release() {
+        if (mGray != null) {
+            mPool.release(mGray);
+            mGray = null;
+        }
+        if (mRgba != null) {
+            mPool.release(mRgba);
+            mRgba = null;
+        }
+        mY = mU = mV = null;
+    }
+
+    /**
+     * Copies the planes into the I420 staging array, once per frame.
+     */
+    private void stage() {
+        if (mStaged)
+            return;
+        int w = mWidth;
+        int h = mHeight;
+        int size = w * h + 2 * (w / 2) * (h / 2);
+        if (mI420 == null || mI420.length != size)
+            mI420 = new byte[size];
+        int rowLength = Math.max(w, (w / 2 - 1) * mChromaPixelStride + 1);
+        if (mRow == null || mRow.length < rowLength)
+            mRow = new byte[rowLength];
+
+        int offset = copyPlane(mY, mYRowStride, 1, w, h, 0);
+        offset = copyPlane(mU, mChromaRowStride, mChromaPixelStride, w / 2, h / 2, offset);
+        copyPlane(mV, mChromaRowStride, mChromaPixelStride, w / 2, h / 2, offset);
+        mStaged = true;
+    }
+
+    /**
+     * Copies a plane into the staging array row by row, dropping the row padding and, for an
+     * interleaved chroma plane, the samples of the other channel.
+     * @return the offset after the copied plane
+     */
+    private int copyPlane(ByteBuffer plane, int rowStride, int pixelStride, int width, int height, int offset) {
+        ByteBuffer rows = plane.duplicate();
+        int rowLength = (width - 1) * pixelStride + 1;
+        for (int i = 0; i < height; i++) {
+            rows.position(i * rowStride);
+            if (pixelStride == 1) {
+                rows.get(mI420, offset, width);
+            } else {
+                rows.get(mRow, 0, rowLength);
+                for (int j = 0; j < width; j++)
+                    mI420[offset + j] = mRow[j * pixelStride];
+            }
+            offset += width;
+        }
+        return offset;
+    }
+}